@@ -0,0 +1,39 @@
+package com.docusign.forklift;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One delivery through an idle lane, start to finish. Run with the GC profiler (on by default in build.gradle) and read
+ * gc.alloc.rate.norm for the bytes each delivery allocates in the executor itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DeliveryAllocationBenchmark {
+
+    private final AtomicLong mDelivered = new AtomicLong();
+    private final FallbackDeliveryExecutor.SerialExecutor mLane = new FallbackDeliveryExecutor.SerialExecutor();
+    private final Runnable mDelivery = new Runnable() {
+        @Override
+        public void run() {
+            mDelivered.incrementAndGet();
+        }
+    };
+
+    @Benchmark
+    public long deliver() {
+        long expected = mDelivered.get() + 1;
+        mLane.execute(mDelivery);
+        while (mDelivered.get() < expected)
+            Thread.yield();
+        return expected;
+    }
+}
@@ -0,0 +1,68 @@
+package com.docusign.forklift;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivery throughput of the shared pool (one priority queue that every lane goes through, the successor of the old FallbackQueue)
+ * against the {@link ForkJoinDelivery} work-stealing backend, with the given number of loaders each handed a burst of deliveries at
+ * once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DeliveryBackendBenchmark {
+
+    private static final int DELIVERIES = 4096;
+    // a delivery's worth of work, in JMH's arbitrary CPU tokens
+    private static final long WORK = 100;
+
+    @Param({ "pool", "forkJoin" })
+    public String backend;
+
+    @Param({ "1", "16", "256" })
+    public int loaders;
+
+    private FallbackDeliveryExecutor.SerialExecutor[] mLanes;
+
+    @Setup
+    public void setUp() {
+        ForkJoinDelivery.setEnabled("forkJoin".equals(backend));
+        mLanes = new FallbackDeliveryExecutor.SerialExecutor[loaders];
+        for (int i = 0; i < loaders; i++)
+            mLanes[i] = new FallbackDeliveryExecutor.SerialExecutor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ForkJoinDelivery.setEnabled(false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DELIVERIES)
+    public void burst() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(DELIVERIES);
+        Runnable delivery = new Runnable() {
+            @Override
+            public void run() {
+                Blackhole.consumeCPU(WORK);
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < DELIVERIES; i++)
+            mLanes[i % loaders].execute(delivery);
+        done.await();
+    }
+}
@@ -0,0 +1,80 @@
+package com.docusign.forklift;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How long a delivery waits between being handed to its loader's lane and starting to run, while the given number of other loader
+ * keys keep the shared pool busy with deliveries of their own. Lanes take turns on the pool, so this should grow with the number of
+ * busy keys, but never starve.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DispatchLatencyBenchmark {
+
+    // a delivery's worth of work for the busy keys, in JMH's arbitrary CPU tokens
+    private static final long BUSY_WORK = 200;
+
+    @Param({ "1", "10", "1000" })
+    public int activeKeys;
+
+    private volatile boolean mBusy;
+    private final AtomicInteger mBusyRunning = new AtomicInteger();
+    private final AtomicLong mProbed = new AtomicLong();
+    private final FallbackDeliveryExecutor.SerialExecutor mProbeLane = new FallbackDeliveryExecutor.SerialExecutor();
+    private final Runnable mProbe = new Runnable() {
+        @Override
+        public void run() {
+            mProbed.incrementAndGet();
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mBusy = true;
+        for (int i = 0; i < activeKeys; i++) {
+            final FallbackDeliveryExecutor.SerialExecutor lane = new FallbackDeliveryExecutor.SerialExecutor();
+            mBusyRunning.incrementAndGet();
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Blackhole.consumeCPU(BUSY_WORK);
+                    if (mBusy)
+                        lane.execute(this); // another delivery for this key, behind everybody else's
+                    else
+                        mBusyRunning.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        mBusy = false;
+        while (mBusyRunning.get() > 0)
+            Thread.sleep(1);
+    }
+
+    @Benchmark
+    public long dispatch() {
+        long expected = mProbed.get() + 1;
+        mProbeLane.execute(mProbe);
+        while (mProbed.get() < expected)
+            Thread.yield();
+        return expected;
+    }
+}
@@ -0,0 +1,100 @@
+package com.docusign.forklift;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submit/poll throughput of the queue behind each {@link FallbackDeliveryExecutor.SerialExecutor} lane (an ArrayDeque under its
+ * own lock, which allocates nothing per job once it has grown), against the stock LinkedBlockingQueue that the old shared
+ * FallbackQueue (and the pool itself) is built on, which allocates a node per job. One thread submits while another polls, as a
+ * loader's result producer and its delivery thread do. Run with -prof gc to compare allocations too.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LaneQueueBenchmark {
+
+    // what a lane does with its jobs
+    private static final class LockedDeque extends AbstractQueue<Runnable> {
+        private final ArrayDeque<Runnable> mJobs = new ArrayDeque<Runnable>();
+
+        @Override
+        public boolean offer(Runnable job) {
+            synchronized (mJobs) {
+                return mJobs.offer(job);
+            }
+        }
+
+        @Override
+        public Runnable poll() {
+            synchronized (mJobs) {
+                return mJobs.poll();
+            }
+        }
+
+        @Override
+        public Runnable peek() {
+            synchronized (mJobs) {
+                return mJobs.peek();
+            }
+        }
+
+        @Override
+        public int size() {
+            synchronized (mJobs) {
+                return mJobs.size();
+            }
+        }
+
+        @Override
+        public Iterator<Runnable> iterator() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final Runnable JOB = new Runnable() {
+        @Override
+        public void run() { }
+    };
+
+    @Param({ "lane", "linkedBlocking" })
+    public String queue;
+
+    private Queue<Runnable> mQueue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        mQueue = "lane".equals(queue) ? new LockedDeque() : new LinkedBlockingQueue<Runnable>();
+    }
+
+    @Benchmark
+    @Group("submitPoll")
+    @GroupThreads(1)
+    public boolean submit() {
+        // keep the queue from growing without bound if the poller falls behind
+        return mQueue.size() < 1024 && mQueue.offer(JOB);
+    }
+
+    @Benchmark
+    @Group("submitPoll")
+    @GroupThreads(1)
+    public Runnable poll() {
+        return mQueue.poll();
+    }
+}
@@ -0,0 +1,52 @@
+package com.docusign.forklift;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One partial result's buffer, from a {@link PayloadPool} against a fresh allocation. Read gc.alloc.rate.norm from the GC profiler:
+ * the pooled buffer should cost only its small holder, however big the buffer. leakDetection only applies to the pooled runs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PayloadPoolBenchmark {
+
+    @Param({ "1024", "65536" })
+    public int size;
+
+    @Param({ "DISABLED", "SAMPLED" })
+    public PayloadPool.LeakDetection leakDetection;
+
+    private PayloadPool mPool;
+
+    @Setup
+    public void setUp() {
+        mPool = new PayloadPool(1024 * 1024, 4 * 1024 * 1024);
+        mPool.setLeakDetection(leakDetection);
+    }
+
+    @Benchmark
+    public byte[] allocated() {
+        byte[] buffer = new byte[size];
+        buffer[0] = 1;
+        return buffer;
+    }
+
+    @Benchmark
+    public byte[] pooled() {
+        PooledPayload payload = mPool.acquire(size);
+        byte[] buffer = payload.array();
+        buffer[0] = 1;
+        payload.release();
+        return buffer;
+    }
+}
@@ -0,0 +1,87 @@
+package com.docusign.forklift;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the delivery pool costs a process at startup: "eager" is how it used to be built, prestarting its core threads as soon as the
+ * class was touched, "lazy" is how it's built now. {@code untouched} is a process that never chains a loader, {@code firstDelivery}
+ * one that delivers a single result. The {@code threads} counter is how many delivery threads each one started.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PoolStartupBenchmark {
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Threads {
+        public int threads;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            threads = 0;
+        }
+    }
+
+    @Param({ "eager", "lazy" })
+    public String mode;
+
+    private FallbackDeliveryExecutor mPool;
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        if (mPool != null) {
+            mPool.shutdownNow();
+            mPool.awaitTermination(1, TimeUnit.SECONDS);
+            mPool = null;
+        }
+    }
+
+    private void start(Threads threads) {
+        if ("eager".equals(mode)) {
+            // the old pool: CPU_COUNT + 1 core threads, started up front and kept forever
+            mPool = new FallbackDeliveryExecutor(CPU_COUNT + 1, CPU_COUNT * 2 + 1, TimeUnit.SECONDS.toMillis(1));
+            mPool.allowCoreThreadTimeOut(false);
+            mPool.prestartAllCoreThreads();
+        }
+        if (mPool != null)
+            threads.threads = mPool.getLargestPoolSize();
+    }
+
+    @Benchmark
+    public void untouched(Threads threads) {
+        start(threads);
+    }
+
+    @Benchmark
+    public void firstDelivery(Threads threads) throws InterruptedException {
+        start(threads);
+        if (mPool == null)
+            mPool = new FallbackDeliveryExecutor(); // as sharedPool() creates it
+
+        final CountDownLatch delivered = new CountDownLatch(1);
+        new FallbackDeliveryExecutor.SerialExecutor(mPool).execute(new Runnable() {
+            @Override
+            public void run() {
+                delivered.countDown();
+            }
+        });
+        delivered.await();
+        threads.threads = mPool.getLargestPoolSize();
+    }
+}
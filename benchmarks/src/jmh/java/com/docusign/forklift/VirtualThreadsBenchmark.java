@@ -0,0 +1,117 @@
+package com.docusign.forklift;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of many concurrent I/O-bound chains (a cache miss falling through to a slow "network" load, then a fallback delivery),
+ * on the regular pools against virtual threads. Needs JDK 21 or later for the virtual runs; on older JVMs they fail at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VirtualThreadsBenchmark {
+
+    private static final int CHAINS = 1000;
+    private static final long IO_MILLIS = 10;
+    private static final Object RESULT = new Object();
+
+    private static class IoTier extends TierChain.Tier<Object> {
+        private final boolean mMiss;
+
+        private IoTier(boolean miss) {
+            mMiss = miss;
+        }
+
+        @Override
+        public Object load() throws ChainLoaderException {
+            if (mMiss)
+                throw NO_RESULT;
+
+            try {
+                Thread.sleep(IO_MILLIS);
+            } catch (InterruptedException e) {
+                throw new ChainLoaderException(e);
+            }
+            return RESULT;
+        }
+    }
+
+    // loads its chain, then hands the result to its lane for a fallback delivery
+    private static class IoLoad implements Runnable {
+        private final TierChain<Object> mChain = TierChain.<Object>builder().add(new IoTier(true)).add(new IoTier(false)).build();
+        private final FallbackDeliveryExecutor.SerialExecutor mLane = new FallbackDeliveryExecutor.SerialExecutor();
+        private final Runnable mDelivery = new Runnable() {
+            @Override
+            public void run() {
+                mDone.countDown();
+            }
+        };
+        private volatile CountDownLatch mDone;
+
+        @Override
+        public void run() {
+            try {
+                mChain.load();
+            } catch (ChainLoaderException e) {
+                throw new IllegalStateException(e);
+            }
+            mLane.execute(mDelivery);
+        }
+    }
+
+    @Param({ "pool", "virtual" })
+    public String mode;
+
+    private ExecutorService mPool;
+    private Executor mLoadExecutor;
+    private IoLoad[] mLoads;
+
+    @Setup
+    public void setUp() {
+        boolean virtual = "virtual".equals(mode);
+        VirtualThreads.setEnabled(virtual);
+
+        // the pool a load would otherwise get: sized like the delivery pool
+        int cpus = Runtime.getRuntime().availableProcessors();
+        mPool = virtual ? null : Executors.newFixedThreadPool(cpus * 2 + 1);
+        mLoadExecutor = virtual ? VirtualThreads.executor() : mPool;
+
+        mLoads = new IoLoad[CHAINS];
+        for (int i = 0; i < CHAINS; i++)
+            mLoads[i] = new IoLoad();
+    }
+
+    @TearDown
+    public void tearDown() {
+        VirtualThreads.setEnabled(false);
+        if (mPool != null)
+            mPool.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHAINS)
+    public void chains() throws Exception {
+        CountDownLatch done = new CountDownLatch(CHAINS);
+        for (int i = 0; i < CHAINS; i++) {
+            mLoads[i].mDone = done;
+            mLoadExecutor.execute(mLoads[i]);
+        }
+        if (!done.await(1, TimeUnit.MINUTES))
+            throw new IllegalStateException("Chains didn't finish in time");
+    }
+}
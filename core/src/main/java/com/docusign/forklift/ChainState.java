@@ -0,0 +1,51 @@
+package com.docusign.forklift;
+
+/**
+ * The state machine every chained loader goes through, whatever it runs on: INITIALIZED, then LOADING_SELF while its own load runs,
+ * then LOADING_CHAIN while its chained loader's results come through, then ALL_LOADS_COMPLETE. Resetting goes back to INITIALIZED.
+ *
+ * Not thread-safe by itself; each owner decides which thread moves it. Transitions are traced to the current {@link TraceRecorder}.
+ */
+/* package */ final class ChainState {
+
+    static final int INITIALIZED 		= 0;
+    static final int LOADING_SELF 		= INITIALIZED + 1;
+    static final int LOADING_CHAIN		= LOADING_SELF + 1;
+    static final int ALL_LOADS_COMPLETE = LOADING_CHAIN + 1; // this should always be "last + 1"
+
+    private static final String[] NAMES = { "INITIALIZED", "LOADING_SELF", "LOADING_CHAIN", "ALL_LOADS_COMPLETE" };
+
+    private final Object mOwner;
+    private volatile int mState = INITIALIZED;
+
+    ChainState(Object owner) {
+        mOwner = owner;
+    }
+
+    int get() {
+        return mState;
+    }
+
+    void moveTo(int state) {
+        if (TraceRecorder.getCurrent() != null) {
+            int old = mState;
+            if (old == LOADING_SELF || old == LOADING_CHAIN)
+                TraceRecorder.asyncEnd(NAMES[old], mOwner, mOwner);
+            if (state == LOADING_SELF || state == LOADING_CHAIN)
+                TraceRecorder.asyncBegin(NAMES[state], mOwner, mOwner);
+            else if (state == INITIALIZED || state == ALL_LOADS_COMPLETE)
+                TraceRecorder.asyncInstant(NAMES[state], mOwner, mOwner);
+        }
+        mState = state;
+    }
+
+    void advance() {
+        moveTo(mState + 1);
+    }
+
+    @Override
+    public String toString() {
+        int state = mState;
+        return state >= 0 && state < NAMES.length ? NAMES[state] : String.valueOf(state);
+    }
+}
@@ -0,0 +1,63 @@
+package com.docusign.forklift;
+
+/**
+ * Counts the deliveries a chained loader has in flight, so that a new load can wait for the last of
+ * them to finish before starting. Waiters are woken exactly when the count drops to zero, rather than polling for it.
+ */
+class DeliveryBarrier {
+
+    private int mInFlight;
+
+    /**
+     * Registers a delivery that has been handed off, and must be matched by exactly one {@link #depart()}.
+     */
+    synchronized void arrive() {
+        mInFlight++;
+    }
+
+    /**
+     * Registers that a delivery has finished, successfully or not.
+     */
+    synchronized void depart() {
+        if (mInFlight <= 0)
+            throw new IllegalStateException("More deliveries departed than arrived");
+
+        if (--mInFlight == 0)
+            notifyAll();
+    }
+
+    synchronized boolean isIdle() {
+        return mInFlight == 0;
+    }
+
+    synchronized int getInFlight() {
+        return mInFlight;
+    }
+
+    /**
+     * Waits until no deliveries are in flight, or until the given time has elapsed. Interrupts don't cut the wait short (a load must
+     * never overtake the deliveries before it), but are passed on once it's over.
+     * @return true if no deliveries are in flight, false if the time elapsed first.
+     */
+    synchronized boolean awaitIdle(long timeoutMillis) {
+        long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+        boolean interrupted = false;
+        try {
+            while (mInFlight > 0) {
+                long remaining = (deadline - System.nanoTime()) / 1000000L;
+                if (remaining <= 0)
+                    return false;
+
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            return true;
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+}
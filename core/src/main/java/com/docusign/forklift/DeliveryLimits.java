@@ -0,0 +1,154 @@
+package com.docusign.forklift;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds how many fallback deliveries can be pending at once: per loader, as set by the loader itself, and across the whole process,
+ * as set here. A delivery is pending from the moment its chained loader hands over a result until onFallbackDelivered() is done with
+ * it. What happens to a result that doesn't fit is up to the loader's {@link OverflowPolicy}; every such event is counted here.
+ *
+ * There are no limits by default.
+ */
+public final class DeliveryLimits {
+
+    private static volatile int sGlobalCapacity = Integer.MAX_VALUE;
+    private static final AtomicInteger sGlobalPending = new AtomicInteger();
+    private static final AtomicLong sBlocked = new AtomicLong();
+    private static final AtomicLong sDropped = new AtomicLong();
+    private static final AtomicLong sFailed = new AtomicLong();
+
+    // blocked producers wait on this; guarded by itself
+    private static final Object sLock = new Object();
+    private static volatile int sWaiters; // only written under sLock, read without it so that a release nobody waits for is cheap
+
+    private DeliveryLimits() { }
+
+    /**
+     * @param capacity How many deliveries may be pending across all loaders at once. Integer.MAX_VALUE for no limit.
+     */
+    public static void setGlobalCapacity(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+
+        sGlobalCapacity = capacity;
+        wakeWaiters(); // there may be more room now
+    }
+
+    public static int getGlobalCapacity() {
+        return sGlobalCapacity;
+    }
+
+    /** @return How many deliveries are pending across all loaders right now. */
+    public static int getGlobalPending() {
+        return sGlobalPending.get();
+    }
+
+    /** @return How many times a producer had to wait for room, under {@link OverflowPolicy#BLOCK}. */
+    public static long getBlockedCount() {
+        return sBlocked.get();
+    }
+
+    /** @return How many partial results were dropped to make room, under {@link OverflowPolicy#DROP_OLDEST_PARTIAL}. */
+    public static long getDroppedCount() {
+        return sDropped.get();
+    }
+
+    /** @return How many results were replaced with a failure, under {@link OverflowPolicy#FAIL} (or for lack of anything to drop). */
+    public static long getFailedCount() {
+        return sFailed.get();
+    }
+
+    /* package */ static void countBlocked() {
+        sBlocked.incrementAndGet();
+    }
+
+    /* package */ static void countDropped() {
+        sDropped.incrementAndGet();
+    }
+
+    /* package */ static void countFailed() {
+        sFailed.incrementAndGet();
+    }
+
+    private static void wakeWaiters() {
+        if (sWaiters == 0)
+            return; // whoever starts waiting after this sees the room that was just made
+        synchronized (sLock) {
+            sLock.notifyAll();
+        }
+    }
+
+    /**
+     * One loader's share of the limits: counts its pending deliveries against its own capacity and the global one.
+     */
+    /* package */ static final class Gate {
+        private final AtomicInteger mPending = new AtomicInteger();
+
+        /**
+         * Takes up room for one more delivery, if there is any.
+         * @return false if this loader, or the process, is at capacity.
+         */
+        boolean tryAcquire(int capacity) {
+            if (!reserve(mPending, capacity))
+                return false;
+            if (!reserve(sGlobalPending, sGlobalCapacity)) {
+                mPending.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        private static boolean reserve(AtomicInteger pending, int capacity) {
+            while (true) {
+                int current = pending.get();
+                if (current >= capacity)
+                    return false;
+                if (pending.compareAndSet(current, current + 1))
+                    return true;
+            }
+        }
+
+        /**
+         * Waits until there's room for one more delivery, and takes it. Like {@link DeliveryBarrier#awaitIdle(long)}, interrupts don't
+         * cut the wait short, but are passed on once it's over.
+         */
+        void acquire(int capacity) {
+            if (tryAcquire(capacity))
+                return;
+
+            boolean interrupted = false;
+            synchronized (sLock) {
+                // counted before each check, so that any room made after it comes with a notify, which can't be missed while
+                // we hold the lock until we wait
+                sWaiters++;
+                try {
+                    while (!tryAcquire(capacity)) {
+                        try {
+                            sLock.wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                } finally {
+                    sWaiters--;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        /**
+         * Gives back the room taken by one delivery, and wakes anybody waiting for it.
+         */
+        void release() {
+            mPending.decrementAndGet();
+            sGlobalPending.decrementAndGet();
+            wakeWaiters();
+        }
+
+        int getPending() {
+            return mPending.get();
+        }
+    }
+}
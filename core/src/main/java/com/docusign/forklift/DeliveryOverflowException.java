@@ -0,0 +1,13 @@
+package com.docusign.forklift;
+
+/**
+ * Delivered in place of a chained loader's result that was dropped because too many deliveries were pending.
+ * @see OverflowPolicy#FAIL
+ */
+public class DeliveryOverflowException extends ChainLoaderException {
+    private static final long serialVersionUID = -6064617926245335004L;
+
+    public DeliveryOverflowException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,24 @@
+package com.docusign.forklift;
+
+/**
+ * How urgently a loader's fallback deliveries should be run, relative to other loaders' on the shared delivery pool. Any int will
+ * do; higher runs sooner. Each level gives a loader's deliveries a head start of half a second over those of the level below, and a
+ * lower-priority loader is never held back longer than that per level, so background work is slowed down but never starved.
+ *
+ * Deliveries of the same loader always run in order, whatever its priority. Priorities have no effect on loaders with a delivery
+ * executor of their own, or while {@link VirtualThreads} or {@link ForkJoinDelivery} are enabled, since there's no shared queue to
+ * reorder then.
+ */
+public final class DeliveryPriority {
+
+    /** For prefetches and other work nobody is looking at yet. */
+    public static final int BACKGROUND = -1;
+
+    /** The default. */
+    public static final int NORMAL = 0;
+
+    /** For the loaders behind what's on screen. */
+    public static final int VISIBLE = 1;
+
+    private DeliveryPriority() { }
+}
@@ -0,0 +1,334 @@
+package com.docusign.forklift;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Carries a loader's fallback deliveries from its chained loader, through the loader's delivery lane, and back to its host, one at a
+ * time and in order. There's one worker per loader, reused for every delivery: the lane runs it once per queued result, it posts a
+ * single reusable Runnable to the host once per processed result, and the bookkeeping for each result is recycled once it's
+ * delivered. A steady stream of results therefore allocates nothing here; only whatever {@link #process(Result, long)} does.
+ *
+ * The worker also owns the loader's lane and its share of the {@link DeliveryLimits}, and applies the loader's
+ * {@link OverflowPolicy} when a result doesn't fit, so that every loader built on it delivers the same way.
+ *
+ * Everything but {@link #run()} and {@link #process(Result, long)} happens on the host's thread.
+ *
+ * @param <T> The type of data delivered
+ */
+/* package */ abstract class DeliveryWorker<T> implements Runnable {
+
+    // one result on its way through; recycled once it's done with
+    private static final class Delivery<T> {
+        Result<T> mData;
+        long mQueuedAt;
+        long mReadyAt;
+        boolean mCancelled;
+    }
+
+    private final Object mOwner; // for tracing
+    private final FallbackDeliveryExecutor.SerialExecutor mLane;
+    private final Host mHost;
+    private final DeliveryBarrier mBarrier = new DeliveryBarrier();
+    private final DeliveryLimits.Gate mGate = new DeliveryLimits.Gate();
+    private final Runnable mPoster = new Runnable() {
+        @Override
+        public void run() {
+            deliverNext();
+        }
+    };
+
+    // all guarded by this
+    private final ArrayDeque<Delivery<T>> mQueued = new ArrayDeque<Delivery<T>>();
+    private final ArrayDeque<Delivery<T>> mReady = new ArrayDeque<Delivery<T>>();
+    private final ArrayDeque<Delivery<T>> mFree = new ArrayDeque<Delivery<T>>();
+    private Delivery<T> mRunning;
+
+    /**
+     * @param owner The loader, as it appears in traces and overflow failures.
+     * @param deliveryExecutor Where {@link #process(Result, long)} runs, one result at a time, or null for the shared delivery pool.
+     * @param host Where {@link #deliver(Result, long)} runs.
+     */
+    DeliveryWorker(Object owner, Executor deliveryExecutor, Host host) {
+        mOwner = owner;
+        mLane = new FallbackDeliveryExecutor.SerialExecutor(deliveryExecutor);
+        mHost = host;
+    }
+
+    /**
+     * Runs a result through the loader, on the lane.
+     * @param queuedAt When the result was queued, as {@link ForkliftMetrics#start()} saw it.
+     * @return The result to deliver, or null to deliver null.
+     */
+    protected abstract Result<T> process(Result<T> data, long queuedAt);
+
+    /**
+     * Delivers a processed result, on the host.
+     * @param readyAt When the result was done being processed, as {@link ForkliftMetrics#start()} saw it.
+     */
+    protected abstract void deliver(Result<T> result, long readyAt);
+
+    /**
+     * Gives up a result that will never be delivered, because it was cancelled: either one from the chain that was never processed,
+     * or one processed that was never delivered. Called on any thread.
+     */
+    protected abstract void discard(Result<T> data);
+
+    /**
+     * Gives up a result that was dropped to make room for another, under {@link OverflowPolicy#DROP_OLDEST_PARTIAL}: either one
+     * that was queued, or the new one itself. Called on the host's thread. Does nothing by default.
+     */
+    protected void drop(Result<T> data) { }
+
+    /**
+     * Delivers a failure in place of a result that couldn't be queued, on the host's thread, ahead of whatever is still pending:
+     * either it didn't fit, or the delivery executor refused it. The result itself has already been given up.
+     */
+    protected abstract void fail(Result<T> failure);
+
+    /**
+     * Queues a result, once it has a place in the {@link DeliveryLimits}. If it doesn't fit, the given policy decides what happens to
+     * it instead. If the delivery executor refuses it, it's discarded and a failure is delivered in its place.
+     * @return true if it was queued.
+     */
+    boolean offer(Result<T> data, int capacity, OverflowPolicy policy) {
+        if (!mGate.tryAcquire(capacity) && !makeRoom(data, capacity, policy))
+            return false;
+
+        return enqueue(data);
+    }
+
+    /**
+     * Applies the {@link OverflowPolicy} to a result that doesn't fit.
+     * @return true if there's now room for it, which it has taken; false if it has been dealt with some other way.
+     */
+    private boolean makeRoom(Result<T> data, int capacity, OverflowPolicy policy) {
+        switch (policy) {
+            case BLOCK:
+                DeliveryLimits.countBlocked();
+                mGate.acquire(capacity);
+                return true;
+
+            case DROP_OLDEST_PARTIAL:
+                Result<T> dropped;
+                while ((dropped = dropOldestPartial()) != null) {
+                    drop(dropped);
+                    DeliveryLimits.countDropped();
+                    if (mGate.tryAcquire(capacity))
+                        return true;
+                }
+                if (data != null && data.getType() == Result.Type.PARTIAL) {
+                    drop(data); // the new one is the oldest partial that hasn't started
+                    DeliveryLimits.countDropped();
+                    return false;
+                }
+                overflowFailed(data); // nothing to drop
+                return false;
+
+            default:
+                overflowFailed(data);
+                return false;
+        }
+    }
+
+    /**
+     * Gives up a result that doesn't fit, and delivers a {@link DeliveryOverflowException} in its place.
+     */
+    private void overflowFailed(Result<T> data) {
+        DeliveryLimits.countFailed();
+        if (data != null)
+            drop(data);
+        fail(Result.<T>failure(new DeliveryOverflowException(
+                "Dropped a result for " + mOwner + ": " + mGate.getPending() + " deliveries already pending")));
+    }
+
+    private boolean enqueue(Result<T> data) {
+        Delivery<T> delivery;
+        synchronized (this) {
+            delivery = mFree.pollLast();
+            if (delivery == null)
+                delivery = new Delivery<T>();
+            delivery.mData = data;
+            delivery.mQueuedAt = ForkliftMetrics.start();
+            mBarrier.arrive();
+            TraceRecorder.asyncBegin("queued", mOwner, delivery);
+            mQueued.addLast(delivery);
+        }
+        try {
+            mLane.execute(this);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // undo the queueing, unless the executor got to it before refusing; the lane's leftover run finds nothing
+            boolean undone;
+            synchronized (this) {
+                undone = mQueued.removeLastOccurrence(delivery);
+                if (undone) {
+                    TraceRecorder.asyncEnd("queued", mOwner, delivery);
+                    mGate.release();
+                    giveUp(delivery);
+                }
+            }
+            if (!undone)
+                return true;
+
+            fail(Result.<T>failure(new ChainLoaderException("The delivery executor refused a result for " + mOwner, e)));
+            return false;
+        }
+    }
+
+    /**
+     * Swaps the newest queued result for a newer one, if it hasn't started being processed and both are partial results.
+     * @return The result that was replaced, or null if there was none to replace.
+     */
+    synchronized Result<T> conflate(Result<T> newer) {
+        Delivery<T> newest = mQueued.peekLast();
+        if (newest == null || newest.mData == null || newest.mData.getType() != Result.Type.PARTIAL
+                || newer == null || newer.getType() != Result.Type.PARTIAL)
+            return null;
+
+        Result<T> older = newest.mData;
+        newest.mData = newer;
+        return older;
+    }
+
+    /**
+     * Takes the oldest partial result that hasn't started being processed out of the queue, and gives up its place.
+     * @return The result that was dropped, or null if there was none.
+     */
+    Result<T> dropOldestPartial() {
+        Result<T> dropped = null;
+        synchronized (this) {
+            for (Iterator<Delivery<T>> i = mQueued.iterator(); i.hasNext(); ) {
+                Delivery<T> delivery = i.next();
+                if (delivery.mData != null && delivery.mData.getType() == Result.Type.PARTIAL) {
+                    i.remove();
+                    dropped = delivery.mData;
+                    TraceRecorder.asyncEnd("queued", mOwner, delivery);
+                    recycle(delivery);
+                    break;
+                }
+            }
+        }
+        if (dropped != null) {
+            mGate.release();
+            mBarrier.depart();
+        }
+        return dropped;
+    }
+
+    /**
+     * Drops everything that hasn't been delivered yet. A result that's being processed right now is dropped once it's done.
+     */
+    void cancel() {
+        synchronized (this) {
+            Delivery<T> delivery;
+            while ((delivery = mQueued.pollFirst()) != null) {
+                TraceRecorder.asyncEnd("queued", mOwner, delivery);
+                mGate.release();
+                giveUp(delivery);
+            }
+            while ((delivery = mReady.pollFirst()) != null)
+                giveUp(delivery); // its poster finds nothing to deliver
+            if (mRunning != null)
+                mRunning.mCancelled = true;
+        }
+    }
+
+    // guarded by this
+    private void giveUp(Delivery<T> delivery) {
+        discard(delivery.mData);
+        mBarrier.depart();
+        recycle(delivery);
+    }
+
+    // guarded by this
+    private void recycle(Delivery<T> delivery) {
+        delivery.mData = null;
+        delivery.mCancelled = false;
+        mFree.addLast(delivery);
+    }
+
+    /**
+     * Processes the oldest queued result; run by the lane, once for each result queued.
+     */
+    @Override
+    public void run() {
+        Delivery<T> delivery;
+        synchronized (this) {
+            delivery = mQueued.pollFirst();
+            if (delivery == null)
+                return; // dropped or cancelled since
+            mRunning = delivery;
+        }
+
+        TraceRecorder.asyncEnd("queued", mOwner, delivery);
+        Result<T> result = null;
+        boolean processed = false;
+        try {
+            result = process(delivery.mData, delivery.mQueuedAt);
+            processed = true;
+        } finally {
+            mGate.release();
+            boolean post;
+            synchronized (this) {
+                mRunning = null;
+                post = processed && !delivery.mCancelled;
+                if (post) {
+                    delivery.mData = result;
+                    delivery.mReadyAt = ForkliftMetrics.start();
+                    mReady.addLast(delivery);
+                } else {
+                    if (processed)
+                        delivery.mData = result;
+                    // otherwise it still holds what was queued, which process() never got to give up
+                    giveUp(delivery);
+                }
+            }
+            if (post)
+                mHost.post(mPoster);
+        }
+    }
+
+    private void deliverNext() {
+        Result<T> result;
+        long readyAt;
+        synchronized (this) {
+            Delivery<T> delivery = mReady.pollFirst();
+            if (delivery == null)
+                return; // cancelled since
+            result = delivery.mData;
+            readyAt = delivery.mReadyAt;
+            recycle(delivery);
+        }
+
+        try {
+            deliver(result, readyAt);
+        } finally {
+            mBarrier.depart();
+        }
+    }
+
+    /* package */ synchronized int getQueuedCount() {
+        return mQueued.size();
+    }
+
+    /**
+     * @return How many results hold a place in the {@link DeliveryLimits}: queued, or being processed.
+     */
+    /* package */ int getPending() {
+        return mGate.getPending();
+    }
+
+    /**
+     * @return Arrived at by every queued result, and departed from once it's delivered or given up.
+     */
+    /* package */ DeliveryBarrier getBarrier() {
+        return mBarrier;
+    }
+
+    /* package */ FallbackDeliveryExecutor.SerialExecutor getLane() {
+        return mLane;
+    }
+}
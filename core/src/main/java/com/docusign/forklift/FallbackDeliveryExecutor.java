@@ -0,0 +1,226 @@
+package com.docusign.forklift;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+* Created by chris.sarbora on 2/1/14.
+*/
+class FallbackDeliveryExecutor extends ThreadPoolExecutor {
+    // these are shamelessly stolen from android.os.AsyncTask's values for THREAD_POOL_EXECUTOR, which also lets its core threads go
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final int CORE_POOL_SIZE = Math.max(2, Math.min(CPU_COUNT - 1, 4));
+    private static final int MAXIMUM_POOL_SIZE = CPU_COUNT * 2 + 1;
+    private static final long KEEP_ALIVE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    // how far ahead of the queue one level of DeliveryPriority gets a lane; also how long it can be kept waiting, per level, by lanes
+    // of higher priority
+    /* package */ static final long AGING_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private static final AtomicLong sScheduleCount = new AtomicLong();
+
+    /**
+     * Runs one loader's jobs one at a time, in submission order, on the shared pool.
+     *
+     * Each loader owns its own SerialExecutor, so submissions for different loaders never touch the same lock or queue. The queue is a
+     * plain ArrayDeque under the lane's own lock, which is all but uncontended (one loader's producer against its one running job)
+     * and, unlike a linked queue, doesn't allocate a node for every job.
+     * The lane is handed to the pool as a single Runnable whenever it has work and isn't already scheduled (guarded by a
+     * CAS on mScheduled), and it runs exactly one job per turn before re-scheduling itself. The pool's own queue therefore
+     * acts as the ready queue: busy loaders take turns instead of hogging a thread.
+     *
+     * The ready queue is ordered by {@link DeliveryPriority}, with aging: each time a lane is scheduled it's given a deadline of
+     * now, moved earlier by AGING_NANOS per level of priority, and lanes run in deadline order (FIFO among equal deadlines). A
+     * higher-priority lane jumps ahead of lanes that have waited less than its head start, but no further, so a low-priority lane
+     * is never kept waiting more than AGING_NANOS per level below its competitors. The deadline is fixed while the lane is queued,
+     * so a priority change applies from the lane's next turn.
+     *
+     * A lane can be given an executor of its own to run on instead of the shared pool, and lanes without one move off it while
+     * {@link VirtualThreads} or {@link ForkJoinDelivery} are enabled; either way, its jobs are still run one at a time, in order.
+     */
+    static final class SerialExecutor implements Executor, Runnable, Comparable<SerialExecutor> {
+        private final ArrayDeque<Runnable> mJobs = new ArrayDeque<Runnable>(); // guarded by itself
+        private final AtomicBoolean mScheduled = new AtomicBoolean();
+        private final Executor mTarget; // null for the shared pool
+        private volatile int mPriority = DeliveryPriority.NORMAL;
+        // the lane's place in the ready queue; only written by whoever wins mScheduled, before handing the lane over
+        private long mDeadline;
+        private long mSequence;
+
+        SerialExecutor() {
+            this(null);
+        }
+
+        SerialExecutor(Executor target) {
+            mTarget = target;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (command == null)
+                throw new NullPointerException("runnable must not be null");
+
+            synchronized (mJobs) {
+                mJobs.addLast(command);
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            // whoever wins the CAS owns the lane until it clears the flag in run(); anybody who loses is guaranteed that
+            // the owner will see their job when it re-checks mJobs after clearing the flag
+            if (hasJobs() && mScheduled.compareAndSet(false, true)) {
+                Executor target = mTarget;
+                if (target == null)
+                    target = VirtualThreads.enabledExecutor();
+                if (target == null)
+                    target = ForkJoinDelivery.enabledExecutor();
+                if (target == null)
+                    target = sharedPool();
+
+                mDeadline = System.nanoTime() - mPriority * AGING_NANOS;
+                mSequence = sScheduleCount.getAndIncrement();
+                try {
+                    try {
+                        target.execute(this);
+                    } catch (RejectedExecutionException e) {
+                        if (target != sInstance)
+                            throw e;
+                        sharedPool().execute(this); // the shared pool was shut down under us (see sharedPool()); try its successor
+                    }
+                } catch (RuntimeException e) {
+                    mScheduled.set(false); // a supplied executor refused us; let the next submission try again
+                    throw e;
+                }
+            }
+        }
+
+        private boolean hasJobs() {
+            synchronized (mJobs) {
+                return !mJobs.isEmpty();
+            }
+        }
+
+        void setPriority(int priority) {
+            mPriority = priority;
+        }
+
+        int getPriority() {
+            return mPriority;
+        }
+
+        @Override
+        public int compareTo(SerialExecutor other) {
+            long deadlines = mDeadline - other.mDeadline; // nanoTime values can only be compared by their difference
+            if (deadlines != 0)
+                return deadlines < 0 ? -1 : 1;
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+
+        @Override
+        public void run() {
+            Runnable job;
+            synchronized (mJobs) {
+                job = mJobs.pollFirst();
+            }
+            try {
+                if (job != null)
+                    job.run();
+            } finally {
+                mScheduled.set(false);
+                schedule();
+            }
+        }
+    }
+
+    // created on first use, so that processes that never chain a loader never start a delivery thread; read reflectively by
+    // FallbackDeliveryExecutorIdlingResource
+    private static volatile FallbackDeliveryExecutor sInstance;
+
+    private final int mBaseCoreSize;
+    private final Object mResizeLock = new Object();
+
+    /**
+     * @return The shared pool, creating it if there isn't one yet, or if the one there was has been shut down.
+     */
+    /* package */ static FallbackDeliveryExecutor sharedPool() {
+        FallbackDeliveryExecutor pool = sInstance;
+        if (pool == null || pool.isShutdown()) {
+            synchronized (FallbackDeliveryExecutor.class) {
+                pool = sInstance;
+                if (pool == null || pool.isShutdown())
+                    sInstance = pool = new FallbackDeliveryExecutor();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * @return The shared pool if it has been created, without creating it.
+     */
+    /* package */ static FallbackDeliveryExecutor peekSharedPool() {
+        return sInstance;
+    }
+
+    /* package */ FallbackDeliveryExecutor() {
+        this(CORE_POOL_SIZE, MAXIMUM_POOL_SIZE, KEEP_ALIVE_MILLIS);
+    }
+
+    /**
+     * No threads are started until there's work for them, and every thread, core or not, retires once it has been idle for
+     * keepAliveMillis.
+     *
+     * An unbounded queue never makes a ThreadPoolExecutor grow past its core size, so the core size itself is adjusted to the queue
+     * depth: it grows by a thread, up to maxSize, whenever a lane is queued behind more lanes than there are core threads, and drops
+     * back to coreSize once the queue has drained.
+     */
+    /* package */ FallbackDeliveryExecutor(int coreSize, int maxSize, long keepAliveMillis) {
+        super(coreSize, maxSize, keepAliveMillis, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger(1);
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Fallback Delivery Boy #" + mCount.getAndIncrement());
+                thread.setDaemon(true); // off Android, idle delivery threads mustn't keep the JVM alive
+                return thread;
+            }
+        }, new ThreadPoolExecutor.AbortPolicy()); // the queue is unbounded, so only after a shutdown; never lose a lane silently
+
+        mBaseCoreSize = coreSize;
+        allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(command);
+
+        int core = getCorePoolSize();
+        if (core < getMaximumPoolSize() && getQueue().size() > core) {
+            synchronized (mResizeLock) {
+                core = getCorePoolSize(); // somebody may have beaten us to it
+                if (core < getMaximumPoolSize() && getQueue().size() > core)
+                    setCorePoolSize(core + 1); // starts the new thread right away, since there's queued work for it
+            }
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+
+        // the core size check is a plain volatile read, so the common case of an unexpanded pool never touches the queue's lock
+        if (getCorePoolSize() > mBaseCoreSize && getQueue().isEmpty()) {
+            synchronized (mResizeLock) {
+                if (getCorePoolSize() > mBaseCoreSize && getQueue().isEmpty())
+                    setCorePoolSize(mBaseCoreSize); // the extra threads retire as they go idle
+            }
+        }
+    }
+}
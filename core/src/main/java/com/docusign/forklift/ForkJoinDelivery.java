@@ -0,0 +1,79 @@
+package com.docusign.forklift;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Opt-in work-stealing backend for fallback deliveries: a {@link ForkJoinPool} in async (FIFO) mode, in place of the shared delivery
+ * pool and its single priority queue.
+ *
+ * Each loader's delivery lane is an actor's mailbox: it's handed to the pool whenever it has work, runs one delivery, and hands itself
+ * back. A lane that reschedules itself from a pool thread lands in that thread's own queue, so a busy loader tends to stay on one
+ * thread and keep its data in that core's cache, while idle threads steal ready lanes from busy ones instead of waiting on a shared
+ * lock. Deliveries of the same loader still run one at a time, in order.
+ *
+ * There's no single queue to reorder, so {@link DeliveryPriority} has no effect here. The pool doesn't make up for threads blocked in
+ * {@code AsyncChainLoader.onFallbackDelivered()}, either: it suits CPU-bound deliveries, like parsing or decoding, better
+ * than ones that wait on I/O. Needs Java 7, or Android 5.0 (API 21) and up.
+ */
+public final class ForkJoinDelivery {
+
+    private static final boolean sSupported = isPresent();
+    private static volatile boolean sEnabled;
+
+    private ForkJoinDelivery() { }
+
+    private static boolean isPresent() {
+        try {
+            Class.forName("java.util.concurrent.ForkJoinPool");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    // only loaded once enabled, so that nothing touches ForkJoinPool where there's none
+    private static final class Pool {
+        static final ForkJoinPool sInstance = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Fallback Delivery Stealer #" + thread.getPoolIndex());
+                return thread; // daemons, and they retire when idle, like the shared pool's
+            }
+        }, null, true);
+    }
+
+    /**
+     * @return true if this platform has a ForkJoinPool.
+     */
+    public static boolean isSupported() {
+        return sSupported;
+    }
+
+    /**
+     * Switches fallback deliveries onto the work-stealing pool, or back onto the shared pool. Takes effect for lanes scheduled from now
+     * on; whatever is already running or queued finishes where it is. Loaders with a delivery executor of their own keep using it, and
+     * {@link VirtualThreads}, if enabled, take precedence.
+     * @throws UnsupportedOperationException If enabling, and this platform has no ForkJoinPool.
+     */
+    public static void setEnabled(boolean enabled) {
+        if (enabled && !sSupported)
+            throw new UnsupportedOperationException("ForkJoinPool needs Java 7, or Android API 21");
+
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * @return The work-stealing pool if enabled, or null to use the shared pool.
+     */
+    /* package */ static Executor enabledExecutor() {
+        return sEnabled ? Pool.sInstance : null;
+    }
+}
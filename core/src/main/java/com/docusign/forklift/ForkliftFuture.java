@@ -0,0 +1,251 @@
+package com.docusign.forklift;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pending result of an asynchronous load, such as {@code Forklift.getAsync()}. Nothing blocks while
+ * the load is in flight; consumers either register callbacks, derive new futures with {@link #then(Transform)}, or fall back to
+ * the blocking {@link java.util.concurrent.Future} methods.
+ *
+ * Cancelling a future resets the loader behind it. Cancelling a derived future cancels the future it was derived from.
+ *
+ * @param <T> The type of the eventual result
+ */
+public class ForkliftFuture<T> implements Future<T> {
+
+    /**
+     * Receives the outcome of a {@link com.docusign.forklift.ForkliftFuture}. Exactly one of these methods is called, exactly once.
+     */
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        /**
+         * @param error Why there is no result. Cancellation is reported as a {@link com.docusign.forklift.LoadCancelledException}.
+         */
+        void onFailure(Throwable error);
+    }
+
+    /**
+     * Converts the result of one future into the result of another.
+     */
+    public interface Transform<T, R> {
+        R apply(T input) throws ChainLoaderException;
+    }
+
+    private static final Executor IMMEDIATE = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final int PENDING    = 0;
+    private static final int SUCCEEDED  = PENDING + 1;
+    private static final int FAILED     = SUCCEEDED + 1;
+    private static final int CANCELLED  = FAILED + 1;
+
+    private final Runnable mOnCancel;
+    private int mState = PENDING;
+    private T mValue;
+    private Throwable mError;
+    private ArrayList<Runnable> mListeners = new ArrayList<Runnable>();
+
+    /**
+     * Constructor
+     * @param onCancel Run (on the cancelling thread) if and only if this future is successfully cancelled. May be null.
+     */
+    /* package */ ForkliftFuture(Runnable onCancel) {
+        mOnCancel = onCancel;
+    }
+
+    /* package */ boolean succeed(T value) {
+        return finish(SUCCEEDED, value, null);
+    }
+
+    /* package */ boolean fail(Throwable error) {
+        return finish(FAILED, null, error);
+    }
+
+    private boolean finish(int state, T value, Throwable error) {
+        ArrayList<Runnable> listeners;
+        synchronized (this) {
+            if (mState != PENDING)
+                return false;
+
+            mState = state;
+            mValue = value;
+            mError = error;
+            listeners = mListeners;
+            mListeners = null;
+            notifyAll();
+        }
+
+        for (Runnable listener : listeners)
+            listener.run();
+        return true;
+    }
+
+    /**
+     * Registers a callback to be run on whichever thread completes this future, or immediately on the calling thread if it is already complete.
+     * @return this future, for chaining
+     */
+    public ForkliftFuture<T> addCallback(Callback<? super T> callback) {
+        return addCallback(callback, IMMEDIATE);
+    }
+
+    /**
+     * Registers a callback to be run on the given executor once this future completes.
+     * @return this future, for chaining
+     */
+    public ForkliftFuture<T> addCallback(final Callback<? super T> callback, final Executor executor) {
+        if (callback == null)
+            throw new NullPointerException("callback must not be null");
+        if (executor == null)
+            throw new NullPointerException("executor must not be null");
+
+        Runnable dispatch = new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // state is final by now, but read it under the lock so we see the values that went with it
+                        int state;
+                        T value;
+                        Throwable error;
+                        synchronized (ForkliftFuture.this) {
+                            state = mState;
+                            value = mValue;
+                            error = mError;
+                        }
+
+                        if (state == SUCCEEDED)
+                            callback.onSuccess(value);
+                        else
+                            callback.onFailure(error);
+                    }
+                });
+            }
+        };
+
+        synchronized (this) {
+            if (mState == PENDING) {
+                mListeners.add(dispatch);
+                return this;
+            }
+        }
+
+        dispatch.run();
+        return this;
+    }
+
+    /**
+     * Derives a future whose result is this future's result passed through the given transform, run on whichever thread completes this future.
+     */
+    public <R> ForkliftFuture<R> then(Transform<? super T, ? extends R> transform) {
+        return then(transform, IMMEDIATE);
+    }
+
+    /**
+     * Derives a future whose result is this future's result passed through the given transform, run on the given executor.
+     * A failure or cancellation of this future skips the transform and is passed straight through.
+     */
+    public <R> ForkliftFuture<R> then(final Transform<? super T, ? extends R> transform, Executor executor) {
+        if (transform == null)
+            throw new NullPointerException("transform must not be null");
+
+        final ForkliftFuture<R> derived = new ForkliftFuture<R>(new Runnable() {
+            @Override
+            public void run() {
+                cancel(false);
+            }
+        });
+
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                if (derived.isDone())
+                    return;
+
+                try {
+                    derived.succeed(transform.apply(result));
+                } catch (ChainLoaderException e) {
+                    derived.fail(e);
+                } catch (RuntimeException e) {
+                    derived.fail(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                if (isCancelled())
+                    derived.finish(CANCELLED, null, error);
+                else
+                    derived.fail(error);
+            }
+        }, executor);
+
+        return derived;
+    }
+
+    /**
+     * Cancels this future and resets the loader that would have produced its result.
+     * @param mayInterruptIfRunning Ignored; loads are never interrupted, only reset.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!finish(CANCELLED, null, new LoadCancelledException()))
+            return false;
+
+        if (mOnCancel != null)
+            mOnCancel.run();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mState == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mState != PENDING;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (mState == PENDING)
+            wait();
+
+        return report();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        while (mState == PENDING) {
+            if (remaining <= 0)
+                throw new TimeoutException();
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+
+        return report();
+    }
+
+    // must be called with this held, once complete
+    private T report() throws ExecutionException {
+        if (mState == SUCCEEDED)
+            return mValue;
+        if (mState == CANCELLED)
+            throw (CancellationException)new CancellationException().initCause(mError);
+        throw new ExecutionException(mError);
+    }
+}
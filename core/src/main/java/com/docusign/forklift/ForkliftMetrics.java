@@ -0,0 +1,77 @@
+package com.docusign.forklift;
+
+/**
+ * Reports how long each stage of a load takes, to whichever {@link Listener} is installed with {@link #setListener(Listener)}.
+ * With no listener installed (the default), nothing is timed: the cost is a single volatile read per stage.
+ */
+public final class ForkliftMetrics {
+
+    /**
+     * The stages of a load that are timed.
+     */
+    public enum Stage {
+        /** A loader's {@code doLoad()}. Type is null if it threw NO_RESULT. */
+        LOAD,
+        /** From a chained loader's result being handed to the {@link FallbackDeliveryExecutor} until it starts being processed. */
+        DELIVERY_QUEUED,
+        /** A loader's {@code onFallbackDelivered()}. Type is null if it threw NO_RESULT. */
+        FALLBACK_DELIVERED,
+        /** From a result being ready on a background thread until it's delivered on the main (or host) thread. */
+        DELIVER_RESULT_HOP,
+        /** The whole of a synchronous load, such as {@code Forklift.getSync()}, i.e. how long the caller was blocked. */
+        GET_SYNC
+    }
+
+    /**
+     * Receives timings. Called on whichever thread the stage ran on, so implementations must be thread-safe, and should be fast.
+     */
+    public interface Listener {
+        /**
+         * @param stage What was timed
+         * @param loaderClass The class of the loader that was timed
+         * @param key The loader's cache key, or its coalescing key, or null.
+         * @param durationNanos How long the stage took
+         * @param type The type of result the stage produced, if any, or null.
+         */
+        void onTiming(Stage stage, Class<?> loaderClass, Object key, long durationNanos, Result.Type type);
+    }
+
+    private static volatile Listener sListener;
+
+    private ForkliftMetrics() { }
+
+    /**
+     * Installs the listener that receives every timing from now on, replacing any previous one.
+     * @param listener The listener, or null to stop timing altogether.
+     */
+    public static void setListener(Listener listener) {
+        sListener = listener;
+    }
+
+    public static Listener getListener() {
+        return sListener;
+    }
+
+    /**
+     * @return The time a stage is starting at, or 0 if nothing is listening.
+     */
+    /* package */ static long start() {
+        return sListener == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Reports a stage that began at the given time (as returned by {@link #start()}) and has just ended.
+     */
+    /* package */ static void end(Stage stage, Object loader, Object key, long start, Result.Type type) {
+        Listener listener = sListener;
+        if (listener == null || start == 0)
+            return;
+
+        long duration = System.nanoTime() - start;
+        listener.onTiming(stage, loader.getClass(), key, duration, type);
+    }
+
+    /* package */ static Result.Type typeOf(Object data) {
+        return data instanceof Result<?> ? ((Result<?>)data).getType() : null;
+    }
+}
@@ -0,0 +1,88 @@
+package com.docusign.forklift;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link ForkliftMetrics.Listener} that keeps a {@link LatencyHistogram} per loader class and {@link ForkliftMetrics.Stage}.
+ * Install it with {@link ForkliftMetrics#setListener(ForkliftMetrics.Listener)}, and {@link #dump()} it whenever you want to know
+ * where the time went.
+ */
+public class HistogramMetrics implements ForkliftMetrics.Listener {
+
+    private static final ForkliftMetrics.Stage[] STAGES = ForkliftMetrics.Stage.values();
+
+    private final ConcurrentHashMap<Class<?>, AtomicReferenceArray<LatencyHistogram>> mHistograms =
+            new ConcurrentHashMap<Class<?>, AtomicReferenceArray<LatencyHistogram>>();
+
+    /** @inheritDoc */
+    @Override
+    public void onTiming(ForkliftMetrics.Stage stage, Class<?> loaderClass, Object key, long durationNanos, Result.Type type) {
+        AtomicReferenceArray<LatencyHistogram> stages = mHistograms.get(loaderClass);
+        if (stages == null) {
+            AtomicReferenceArray<LatencyHistogram> created = new AtomicReferenceArray<LatencyHistogram>(STAGES.length);
+            stages = mHistograms.putIfAbsent(loaderClass, created);
+            if (stages == null)
+                stages = created;
+        }
+
+        LatencyHistogram histogram = stages.get(stage.ordinal());
+        if (histogram == null) {
+            stages.compareAndSet(stage.ordinal(), null, new LatencyHistogram());
+            histogram = stages.get(stage.ordinal());
+        }
+
+        histogram.record(durationNanos);
+    }
+
+    /**
+     * @return The histogram for the given loader class and stage, or null if nothing has been recorded for them.
+     */
+    public LatencyHistogram getHistogram(Class<?> loaderClass, ForkliftMetrics.Stage stage) {
+        AtomicReferenceArray<LatencyHistogram> stages = mHistograms.get(loaderClass);
+        return stages == null ? null : stages.get(stage.ordinal());
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void clear() {
+        mHistograms.clear();
+    }
+
+    /**
+     * @return A human-readable summary of every histogram, one line per loader class and stage.
+     */
+    public String dump() {
+        ArrayList<Map.Entry<Class<?>, AtomicReferenceArray<LatencyHistogram>>> entries =
+                new ArrayList<Map.Entry<Class<?>, AtomicReferenceArray<LatencyHistogram>>>(mHistograms.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<Class<?>, AtomicReferenceArray<LatencyHistogram>>>() {
+            @Override
+            public int compare(Map.Entry<Class<?>, AtomicReferenceArray<LatencyHistogram>> lhs,
+                               Map.Entry<Class<?>, AtomicReferenceArray<LatencyHistogram>> rhs) {
+                return lhs.getKey().getName().compareTo(rhs.getKey().getName());
+            }
+        });
+
+        StringBuilder dump = new StringBuilder();
+        for (Map.Entry<Class<?>, AtomicReferenceArray<LatencyHistogram>> entry : entries) {
+            for (ForkliftMetrics.Stage stage : STAGES) {
+                LatencyHistogram histogram = entry.getValue().get(stage.ordinal());
+                if (histogram == null)
+                    continue;
+
+                dump.append(entry.getKey().getName()).append(' ').append(stage).append(": ").append(histogram).append('\n');
+            }
+        }
+        return dump.toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+}
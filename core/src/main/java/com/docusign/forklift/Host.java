@@ -0,0 +1,12 @@
+package com.docusign.forklift;
+
+/**
+ * Where a {@link DeliveryWorker} delivers its results, and does its bookkeeping: the main thread on Android, or an event loop such as
+ * {@link ThreadHost} anywhere else. Everything posted to a host must run on the same single thread, in the order it was posted.
+ */
+public interface Host {
+    /**
+     * Runs the given runnable on the host's thread, after everything posted before it.
+     */
+    void post(Runnable runnable);
+}
@@ -0,0 +1,116 @@
+package com.docusign.forklift;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in nanoseconds. Recording is a couple of atomic increments, so it can be done from any number of
+ * threads at once without contention on a lock.
+ *
+ * Durations are bucketed logarithmically, with 8 buckets per power of two, so percentiles are accurate to within 12.5%.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 48; // ~3 days, in nanoseconds; anything longer goes in the last bucket
+    private static final int BUCKETS = (MAX_MAGNITUDE + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotal = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Records a duration. Negative durations are recorded as 0.
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+
+        mCounts.incrementAndGet(bucketOf(nanos));
+        mCount.incrementAndGet();
+        mTotal.addAndGet(nanos);
+
+        long max;
+        while (nanos > (max = mMax.get()) && !mMax.compareAndSet(max, nanos)) { }
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int)nanos; // exact, for what it's worth
+
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos); // >= SUB_BUCKET_BITS
+        if (magnitude > MAX_MAGNITUDE)
+            return BUCKETS - 1;
+
+        int sub = (int)(nanos >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // the largest value that falls in the given bucket
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long base = 1L << magnitude;
+        long width = 1L << (magnitude - SUB_BUCKET_BITS);
+        return base + (sub + 1) * width - 1;
+    }
+
+    /**
+     * @param percentile Between 0 and 100.
+     * @return The duration, in nanoseconds, that the given percentage of recorded durations did not exceed. 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+
+        // the counts may move while we look, so work from a snapshot to keep the total consistent with the buckets
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = mCounts.get(i);
+            total += counts[i];
+        }
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long)Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(upperBoundOf(i), mMax.get());
+        }
+        return mMax.get();
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /** @return The mean of the recorded durations, in nanoseconds, or 0 if nothing was recorded. */
+    public long getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mTotal.get() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " p50=" + millis(getPercentile(50)) + " p95=" + millis(getPercentile(95)) + " p99="
+                + millis(getPercentile(99)) + " max=" + millis(getMax());
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.US, "%.3fms", nanos / (double)TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,362 @@
+package com.docusign.forklift;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A size-bounded key/value store kept in a single memory-mapped file, for use as the backing store of a {@link DiskCacheLoader}.
+ *
+ * Records are only ever appended, so a value that has been read stays valid for as long as the reader holds on to it. An in-memory
+ * index, rebuilt from the file when it is opened, finds any record without touching the disk; reads are served straight out of the
+ * mapping. Each record carries a checksum, so a record torn by the process dying halfway through a write is simply dropped (along with
+ * anything after it) the next time the file is opened.
+ *
+ * Once the live records exceed the maximum size, the least recently used ones are evicted. Replaced and evicted records are reclaimed by
+ * compacting the file into a fresh one once they outweigh the live records.
+ *
+ * Keys must be unique across everything that shares a store. All methods are thread-safe.
+ */
+public class MappedDiskStore {
+
+    private static final int MAGIC = 0x464b4c31; // "FKL1"
+    private static final int FILE_HEADER_SIZE = 8; // magic, then reserved
+    private static final int RECORD_HEADER_SIZE = 16; // key length, value length (-1 for a removal), crc, reserved
+    private static final int MIN_MAPPED_SIZE = 64 * 1024;
+    private static final String UTF8 = "UTF-8";
+
+    private static class Record {
+        final long mOffset; // of the record header
+        final int mKeyLength;
+        final int mValueLength;
+
+        Record(long offset, int keyLength, int valueLength) {
+            mOffset = offset;
+            mKeyLength = keyLength;
+            mValueLength = valueLength;
+        }
+
+        long size() {
+            return RECORD_HEADER_SIZE + mKeyLength + mValueLength;
+        }
+    }
+
+    private final File mFile;
+    private final long mMaxSize;
+    private final LinkedHashMap<String, Record> mIndex = new LinkedHashMap<String, Record>(16, .75f, true); // access order, eldest first
+    private RandomAccessFile mRandomAccessFile;
+    private MappedByteBuffer mBuffer;
+    private long mWritePosition;
+    private long mLiveSize;
+
+    /**
+     * Opens (or creates) a store.
+     * @param file The file to keep the store in. Nothing else may use it, including another MappedDiskStore.
+     * @param maxSize The maximum total size, in bytes, of the records to keep. The file itself may grow to about twice this before it is compacted.
+     * @throws IOException If the file cannot be opened or created. A file that exists but isn't a store is emptied rather than failing.
+     */
+    public MappedDiskStore(File file, long maxSize) throws IOException {
+        if (file == null)
+            throw new NullPointerException("file must not be null");
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize must be positive");
+
+        mFile = file;
+        mMaxSize = maxSize;
+        open();
+    }
+
+    private void open() throws IOException {
+        mRandomAccessFile = new RandomAccessFile(mFile, "rw");
+        map(Math.max(mRandomAccessFile.length(), MIN_MAPPED_SIZE));
+
+        mIndex.clear();
+        mLiveSize = 0;
+        if (mBuffer.getInt(0) != MAGIC) {
+            mBuffer.putInt(0, MAGIC);
+            mWritePosition = FILE_HEADER_SIZE;
+            clearFrom(mWritePosition);
+            return;
+        }
+
+        mWritePosition = FILE_HEADER_SIZE;
+        while (true) {
+            Record record = readRecordAt(mWritePosition);
+            if (record == null)
+                break;
+
+            String key = readKey(record);
+            Record previous = mIndex.remove(key);
+            if (previous != null)
+                mLiveSize -= previous.size();
+            if (record.mValueLength >= 0) {
+                mIndex.put(key, record);
+                mLiveSize += record.size();
+            }
+            mWritePosition += RECORD_HEADER_SIZE + record.mKeyLength + Math.max(record.mValueLength, 0);
+        }
+
+        clearFrom(mWritePosition); // whatever follows the last good record is garbage, and would confuse the next scan
+        trim(null);
+    }
+
+    // returns null if there's no valid record at position
+    private Record readRecordAt(long position) {
+        if (position + RECORD_HEADER_SIZE > mBuffer.capacity())
+            return null;
+
+        int start = (int)position;
+        int keyLength = mBuffer.getInt(start);
+        int valueLength = mBuffer.getInt(start + 4);
+        int crc = mBuffer.getInt(start + 8);
+        if (keyLength <= 0 || valueLength < -1)
+            return null;
+
+        long end = position + RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+        if (end > mBuffer.capacity())
+            return null;
+
+        Record record = new Record(position, keyLength, Math.max(valueLength, 0));
+        if (crc != checksum(slice(position + RECORD_HEADER_SIZE, keyLength + record.mValueLength), valueLength))
+            return null;
+
+        return valueLength < 0 ? new Record(position, keyLength, -1) : record;
+    }
+
+    private static int checksum(ByteBuffer body, int valueLength) {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[Math.min(body.remaining(), 8192) + 4];
+        chunk[0] = (byte)(valueLength >>> 24);
+        chunk[1] = (byte)(valueLength >>> 16);
+        chunk[2] = (byte)(valueLength >>> 8);
+        chunk[3] = (byte)valueLength;
+        crc.update(chunk, 0, 4);
+        while (body.hasRemaining()) {
+            int length = Math.min(body.remaining(), chunk.length);
+            body.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return (int)crc.getValue();
+    }
+
+    private String readKey(Record record) throws IOException {
+        ByteBuffer key = slice(record.mOffset + RECORD_HEADER_SIZE, record.mKeyLength);
+        byte[] bytes = new byte[record.mKeyLength];
+        key.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private ByteBuffer slice(long position, int length) {
+        ByteBuffer dup = mBuffer.duplicate();
+        dup.position((int)position);
+        dup.limit((int)position + length);
+        return dup.slice();
+    }
+
+    private void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("MappedDiskStore files are limited to 2GB");
+        mBuffer = mRandomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void clearFrom(long position) {
+        // a zero key length marks the end of the records; one is all it takes
+        if (position + 4 <= mBuffer.capacity())
+            mBuffer.putInt((int)position, 0);
+    }
+
+    /**
+     * Looks up a value. The returned buffer reads straight out of the mapped file, without copying it, and stays valid even if the
+     * value is replaced or evicted afterwards.
+     * @return A read-only buffer holding the value, or null if there is none.
+     */
+    public synchronized ByteBuffer get(String key) {
+        checkOpen();
+        Record record = mIndex.get(key);
+        if (record == null)
+            return null;
+
+        return slice(record.mOffset + RECORD_HEADER_SIZE + record.mKeyLength, record.mValueLength).asReadOnlyBuffer();
+    }
+
+    /**
+     * Stores a value, replacing any existing value for the same key. A value larger than the store's maximum size is not stored
+     * at all (and removes the existing value instead).
+     */
+    public synchronized void put(String key, byte[] value) throws IOException {
+        if (value == null)
+            throw new NullPointerException("value must not be null");
+
+        checkOpen();
+        byte[] keyBytes = key.getBytes(UTF8);
+        if (RECORD_HEADER_SIZE + keyBytes.length + value.length > mMaxSize) {
+            remove(key);
+            return;
+        }
+
+        Record record = append(keyBytes, value, value.length);
+        Record previous = mIndex.put(key, record);
+        if (previous != null)
+            mLiveSize -= previous.size();
+        mLiveSize += record.size();
+
+        trim(key);
+    }
+
+    /**
+     * Removes a value, if there is one.
+     */
+    public synchronized void remove(String key) throws IOException {
+        checkOpen();
+        Record previous = mIndex.remove(key);
+        if (previous == null)
+            return;
+
+        mLiveSize -= previous.size();
+        append(key.getBytes(UTF8), new byte[0], -1);
+        compactIfWasteful();
+    }
+
+    /**
+     * Removes every value.
+     */
+    public synchronized void clear() throws IOException {
+        checkOpen();
+        mIndex.clear();
+        mLiveSize = 0;
+        compact();
+    }
+
+    // must be called with this held
+    private Record append(byte[] key, byte[] value, int valueLength) throws IOException {
+        long size = RECORD_HEADER_SIZE + key.length + value.length;
+        long end = mWritePosition + size;
+        if (end + 4 > mBuffer.capacity()) // room for the end marker too
+            map(Math.max(end + 4, mBuffer.capacity() * 2L));
+
+        int start = (int)mWritePosition;
+        ByteBuffer body = slice(mWritePosition + RECORD_HEADER_SIZE, key.length + value.length);
+        body.put(key);
+        body.put(value);
+        body.flip();
+
+        clearFrom(end);
+        mBuffer.putInt(start + 4, valueLength);
+        mBuffer.putInt(start + 8, checksum(body, valueLength));
+        mBuffer.putInt(start, key.length); // last, so the record only becomes visible once it's complete
+
+        mWritePosition = end;
+        return new Record(start, key.length, valueLength);
+    }
+
+    // must be called with this held. evicts the least recently used records until the live ones fit, never evicting the given key.
+    private void trim(String kept) throws IOException {
+        Iterator<Map.Entry<String, Record>> eldest = mIndex.entrySet().iterator();
+        while (mLiveSize > mMaxSize && eldest.hasNext()) {
+            Map.Entry<String, Record> victim = eldest.next();
+            if (victim.getKey().equals(kept))
+                continue;
+
+            eldest.remove();
+            mLiveSize -= victim.getValue().size();
+            append(victim.getKey().getBytes(UTF8), new byte[0], -1); // so that it stays evicted when the file is reopened
+        }
+
+        compactIfWasteful();
+    }
+
+    // must be called with this held
+    private void compactIfWasteful() throws IOException {
+        long used = mWritePosition - FILE_HEADER_SIZE;
+        if (used - mLiveSize > Math.max(mLiveSize, MIN_MAPPED_SIZE) || used > mMaxSize * 2)
+            compact();
+    }
+
+    // must be called with this held. rewrites the live records into a new file and swaps it in.
+    private void compact() throws IOException {
+        File temp = new File(mFile.getPath() + ".compact");
+        RandomAccessFile out = new RandomAccessFile(temp, "rw");
+        LinkedHashMap<String, Record> compacted = new LinkedHashMap<String, Record>(16, .75f, true);
+        try {
+            out.setLength(0);
+            MappedByteBuffer target = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.max(FILE_HEADER_SIZE + mLiveSize + 4, MIN_MAPPED_SIZE));
+            target.putInt(0, MAGIC);
+            target.position(FILE_HEADER_SIZE);
+
+            // oldest first, so the new file's order (and so the index rebuilt from it) matches the current recency order
+            for (Map.Entry<String, Record> entry : mIndex.entrySet()) {
+                Record record = entry.getValue();
+                compacted.put(entry.getKey(), new Record(target.position(), record.mKeyLength, record.mValueLength));
+                target.put(slice(record.mOffset, (int)record.size()));
+            }
+
+            if (target.remaining() >= 4)
+                target.putInt(target.position(), 0);
+            target.force();
+        } finally {
+            out.close();
+        }
+
+        mRandomAccessFile.close();
+        if (!temp.renameTo(mFile)) {
+            temp.delete();
+            mRandomAccessFile = new RandomAccessFile(mFile, "rw"); // the old mapping is still good, carry on with it
+            throw new IOException("Could not replace " + mFile + " with its compacted copy");
+        }
+
+        // the old mapping lives on until it's collected, so buffers handed out by get() stay valid
+        mRandomAccessFile = new RandomAccessFile(mFile, "rw");
+        map(Math.max(mRandomAccessFile.length(), MIN_MAPPED_SIZE));
+        mIndex.clear();
+        mIndex.putAll(compacted);
+        mWritePosition = FILE_HEADER_SIZE + mLiveSize;
+    }
+
+    /**
+     * Writes any changes still only held in memory out to the disk.
+     */
+    public synchronized void flush() {
+        checkOpen();
+        mBuffer.force();
+    }
+
+    /**
+     * Flushes and closes the store. Buffers already returned by {@link #get(String)} stay valid.
+     */
+    public synchronized void close() throws IOException {
+        if (mRandomAccessFile == null)
+            return;
+
+        mBuffer.force();
+        mRandomAccessFile.close();
+        mRandomAccessFile = null;
+    }
+
+    private void checkOpen() {
+        if (mRandomAccessFile == null)
+            throw new IllegalStateException("MappedDiskStore is closed");
+    }
+
+    /** @return The number of values currently stored. */
+    public synchronized int count() {
+        return mIndex.size();
+    }
+
+    /** @return The total size, in bytes, of the records currently stored. */
+    public synchronized long size() {
+        return mLiveSize;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MappedDiskStore[" + mFile + ", count=" + mIndex.size() + ", size=" + mLiveSize + "/" + mMaxSize + "]";
+    }
+}
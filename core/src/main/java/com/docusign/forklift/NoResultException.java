@@ -0,0 +1,9 @@
+package com.docusign.forklift;
+
+/**
+ * Special case of ChainLoaderException thrown by a loader's {@code doLoad()} when it has no result of its own, and its chained loader
+ * should provide one instead.
+ */
+/* package */ class NoResultException extends ChainLoaderException {
+    private static final long serialVersionUID = 2596920468208815208L;
+}
@@ -0,0 +1,20 @@
+package com.docusign.forklift;
+
+/**
+ * What a loader does with a result from its chained loader when it already has as many deliveries pending as it, or the process,
+ * allows. See {@link DeliveryLimits}.
+ */
+public enum OverflowPolicy {
+    /**
+     * Wait for room, holding up whoever handed over the result. On Android that's the main thread, so a limit that's reached often
+     * risks an ANR.
+     */
+    BLOCK,
+    /**
+     * Make room by dropping the oldest PARTIAL result that hasn't started being delivered, which may be the new one. If there's no
+     * partial result to drop, fall back to {@link #FAIL}.
+     */
+    DROP_OLDEST_PARTIAL,
+    /** Drop the new result, and deliver a failure with a {@link DeliveryOverflowException} in its place. */
+    FAIL
+}
@@ -0,0 +1,253 @@
+package com.docusign.forklift;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-classed pool of byte buffers, handed out as reference-counted {@link PooledPayload}s. Buffers are sized in powers of two,
+ * from 256 bytes up to the pool's largest pooled size; bigger requests are allocated and dropped as usual. Released buffers are kept
+ * for reuse up to a total number of bytes, so a loader that streams partial results of similar sizes stops allocating buffers once
+ * it's warmed up. Only the small {@link PooledPayload} holders are still allocated each time.
+ *
+ * Payloads that are never released are found once they're garbage collected: each one reported to the {@link LeakListener}, if any,
+ * with where it was acquired. Their buffers are then put back in the pool. Tracking costs a little for each payload, so by default
+ * only a sample of them is tracked; see {@link #setLeakDetection(LeakDetection)}.
+ */
+public class PayloadPool {
+
+    /**
+     * How many payloads are tracked for leaks.
+     */
+    public enum LeakDetection {
+        /** None. */
+        DISABLED,
+        /** One in every 128, the default: enough to find a leak in anything that leaks often. */
+        SAMPLED,
+        /** Every one, for tests and debugging. */
+        ALL
+    }
+
+    /**
+     * Told about payloads that were garbage collected without being released.
+     */
+    public interface LeakListener {
+        /**
+         * Called on whichever thread found the leak, while acquiring another payload.
+         * @param acquiredAt Where the leaked payload was acquired.
+         */
+        void onLeak(PayloadPool pool, Throwable acquiredAt);
+    }
+
+    private static final int MIN_SHIFT = 8; // 256 bytes
+    private static final int SAMPLE_INTERVAL = 128;
+    private static final int DEFAULT_MAX_POOLED_SIZE = 4 * 1024 * 1024;
+    private static final long DEFAULT_MAX_RETAINED_BYTES = 16 * 1024 * 1024;
+
+    private static PayloadPool sDefault;
+
+    /**
+     * @return The shared pool. Pools buffers of up to 4MB, and keeps up to 16MB of them, unless replaced.
+     */
+    public static synchronized PayloadPool getDefault() {
+        if (sDefault == null)
+            sDefault = new PayloadPool(DEFAULT_MAX_POOLED_SIZE, DEFAULT_MAX_RETAINED_BYTES);
+        return sDefault;
+    }
+
+    /**
+     * Replaces the shared pool. Payloads from the old pool still go back to it when released.
+     */
+    public static synchronized void setDefault(PayloadPool pool) {
+        if (pool == null)
+            throw new NullPointerException("pool must not be null");
+        sDefault = pool;
+    }
+
+    // keeps a tracked payload's buffer reachable, to be put back once the payload itself is gone
+    /* package */ static final class LeakTracker extends PhantomReference<PooledPayload> {
+        final byte[] mArray;
+        final Throwable mAcquiredAt;
+
+        LeakTracker(PooledPayload payload, byte[] array, ReferenceQueue<PooledPayload> queue) {
+            super(payload, queue);
+            mArray = array;
+            mAcquiredAt = new Throwable("Payload of " + array.length + " bytes acquired here");
+        }
+    }
+
+    private final int mMaxPooledSize;
+    private final long mMaxRetainedBytes;
+    private final ArrayDeque<byte[]>[] mFree; // one per size class; each guarded by itself
+    private final AtomicLong mRetainedBytes = new AtomicLong();
+    private final ReferenceQueue<PooledPayload> mCollected = new ReferenceQueue<PooledPayload>();
+    private final Set<LeakTracker> mTrackers = Collections.newSetFromMap(new ConcurrentHashMap<LeakTracker, Boolean>());
+    private final AtomicInteger mSampleCount = new AtomicInteger();
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mLeakCount = new AtomicLong();
+    private volatile LeakDetection mLeakDetection = LeakDetection.SAMPLED;
+    private volatile LeakListener mLeakListener;
+
+    /**
+     * @param maxPooledSize The largest buffer to pool; rounded up to a power of two.
+     * @param maxRetainedBytes How many bytes of released buffers to keep, across all sizes.
+     */
+    public PayloadPool(int maxPooledSize, long maxRetainedBytes) {
+        if (maxPooledSize <= 0 || maxPooledSize > 1 << 30)
+            throw new IllegalArgumentException("maxPooledSize must be between 1 and 2^30");
+        if (maxRetainedBytes < 0)
+            throw new IllegalArgumentException("maxRetainedBytes must not be negative");
+
+        mMaxRetainedBytes = maxRetainedBytes;
+        int classes = sizeClassOf(maxPooledSize) + 1;
+        mMaxPooledSize = sizeOf(classes - 1);
+        @SuppressWarnings({ "unchecked", "rawtypes" }) // no generic array creation
+        ArrayDeque<byte[]>[] free = new ArrayDeque[classes];
+        for (int i = 0; i < classes; i++)
+            free[i] = new ArrayDeque<byte[]>();
+        mFree = free;
+    }
+
+    private static int sizeClassOf(int size) {
+        if (size <= 1 << MIN_SHIFT)
+            return 0;
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    private static int sizeOf(int sizeClass) {
+        return 1 << (sizeClass + MIN_SHIFT);
+    }
+
+    /**
+     * @param size How many bytes are needed.
+     * @return A payload of the given length, holding one reference, whose buffer is at least that big. Its contents are undefined.
+     */
+    public PooledPayload acquire(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("size must not be negative");
+
+        reclaimLeaks();
+
+        byte[] array = null;
+        if (size <= mMaxPooledSize) {
+            int sizeClass = sizeClassOf(size);
+            ArrayDeque<byte[]> free = mFree[sizeClass];
+            synchronized (free) {
+                array = free.pollLast(); // the most recently used is the likeliest to still be in a cache
+            }
+            if (array != null) {
+                mRetainedBytes.addAndGet(-array.length);
+                mHitCount.incrementAndGet();
+            } else {
+                array = new byte[sizeOf(sizeClass)];
+                mMissCount.incrementAndGet();
+            }
+        } else {
+            array = new byte[size];
+            mMissCount.incrementAndGet();
+        }
+
+        PooledPayload payload = new PooledPayload(this, array, size);
+        if (isTracked()) {
+            LeakTracker tracker = new LeakTracker(payload, array, mCollected);
+            mTrackers.add(tracker);
+            payload.mTracker = tracker;
+        }
+        return payload;
+    }
+
+    private boolean isTracked() {
+        switch (mLeakDetection) {
+            case ALL:
+                return true;
+            case SAMPLED:
+                return mSampleCount.getAndIncrement() % SAMPLE_INTERVAL == 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Called by the payload when its last reference is released.
+     */
+    /* package */ void recycle(PooledPayload payload, byte[] array) {
+        LeakTracker tracker = payload.mTracker;
+        if (tracker != null) {
+            payload.mTracker = null;
+            mTrackers.remove(tracker);
+            tracker.clear();
+        }
+        offer(array);
+    }
+
+    private void offer(byte[] array) {
+        int length = array.length;
+        if (length > mMaxPooledSize || Integer.bitCount(length) != 1 || length < sizeOf(0))
+            return; // not one of ours
+
+        if (mRetainedBytes.addAndGet(length) > mMaxRetainedBytes) {
+            mRetainedBytes.addAndGet(-length);
+            return;
+        }
+        ArrayDeque<byte[]> free = mFree[sizeClassOf(length)];
+        synchronized (free) {
+            free.addLast(array);
+        }
+    }
+
+    private void reclaimLeaks() {
+        LeakTracker tracker;
+        while ((tracker = (LeakTracker)mCollected.poll()) != null) {
+            if (!mTrackers.remove(tracker))
+                continue; // released after all
+            mLeakCount.incrementAndGet();
+            LeakListener listener = mLeakListener;
+            if (listener != null)
+                listener.onLeak(this, tracker.mAcquiredAt);
+            offer(tracker.mArray); // nobody can reach it anymore
+        }
+    }
+
+    public void setLeakDetection(LeakDetection detection) {
+        if (detection == null)
+            throw new NullPointerException("detection must not be null");
+        mLeakDetection = detection;
+    }
+
+    public LeakDetection getLeakDetection() {
+        return mLeakDetection;
+    }
+
+    /**
+     * @param listener Told about each leaked payload that's found, or null.
+     */
+    public void setLeakListener(LeakListener listener) {
+        mLeakListener = listener;
+    }
+
+    /** @return How many payloads got a recycled buffer. */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /** @return How many payloads needed a newly allocated buffer. */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /** @return How many tracked payloads were found to have been garbage collected without being released. */
+    public long getLeakCount() {
+        return mLeakCount.get();
+    }
+
+    /** @return How many bytes of released buffers the pool is holding on to. */
+    public long getRetainedBytes() {
+        return mRetainedBytes.get();
+    }
+}
@@ -0,0 +1,110 @@
+package com.docusign.forklift;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference-counted byte buffer from a {@link PayloadPool}, for delivering large data (e.g. each partial result of a progressive
+ * load) without allocating a fresh buffer every time.
+ *
+ * Whoever {@link PayloadPool#acquire(int) acquires} a payload holds one reference to it; everybody else who wants to keep it has to
+ * {@link #retain()} it, and everybody who holds a reference has to {@link #release()} it exactly once. The buffer goes back to the
+ * pool when the last reference is released, after which it must not be touched. Payloads delivered as results of an
+ * {@code AsyncChainLoader} are retained and released by the loader itself; see its {@code onReleaseData(Result)}. Like anything else
+ * it releases, the payload of a loader's last result is released when the loader is reset, which Forklift does right after handing
+ * it out: retain it in a callback on the main thread to keep it any longer.
+ *
+ * A payload that's garbage collected without having been released is reported as a leak by its pool.
+ */
+public final class PooledPayload {
+
+    private final PayloadPool mPool;
+    private final AtomicInteger mReferences = new AtomicInteger(1);
+    private volatile byte[] mArray; // null once released
+    private int mLength;
+    /* package */ PayloadPool.LeakTracker mTracker; // null if not tracked
+
+    /* package */ PooledPayload(PayloadPool pool, byte[] array, int length) {
+        mPool = pool;
+        mArray = array;
+        mLength = length;
+    }
+
+    /**
+     * @return The buffer. May be larger than asked for; see {@link #getLength()}.
+     * @throws IllegalStateException If the payload has already been released.
+     */
+    public byte[] array() {
+        byte[] array = mArray;
+        if (array == null)
+            throw new IllegalStateException("Payload was already released");
+        return array;
+    }
+
+    /**
+     * @return How many bytes of the buffer are in use: the size asked for, unless changed with {@link #setLength(int)}.
+     */
+    public int getLength() {
+        return mLength;
+    }
+
+    public void setLength(int length) {
+        if (length < 0 || length > array().length)
+            throw new IndexOutOfBoundsException("length " + length + " out of bounds for a buffer of " + array().length);
+        mLength = length;
+    }
+
+    /**
+     * Takes another reference to this payload, to be given up with {@link #release()}.
+     * @return This payload.
+     * @throws IllegalStateException If the payload has already been released.
+     */
+    public PooledPayload retain() {
+        while (true) {
+            int references = mReferences.get();
+            if (references <= 0)
+                throw new IllegalStateException("Payload was already released");
+            if (mReferences.compareAndSet(references, references + 1))
+                return this;
+        }
+    }
+
+    /**
+     * Gives up a reference to this payload, returning its buffer to the pool if it was the last one.
+     * @return true if the buffer was returned to the pool.
+     * @throws IllegalStateException If every reference has already been released.
+     */
+    public boolean release() {
+        int references = mReferences.decrementAndGet();
+        if (references > 0)
+            return false;
+        if (references < 0) {
+            mReferences.incrementAndGet();
+            throw new IllegalStateException("Payload was released more often than it was retained");
+        }
+
+        byte[] array = mArray;
+        mArray = null;
+        mPool.recycle(this, array);
+        return true;
+    }
+
+    /** @return How many references to this payload are held. 0 once it has been released. */
+    public int getReferenceCount() {
+        return mReferences.get();
+    }
+
+    /**
+     * @return The payload a result carries, or null if it doesn't carry one (or is a failure).
+     */
+    /* package */ static PooledPayload of(Result<?> result) {
+        if (result == null || result.getType() == Result.Type.FAILURE)
+            return null;
+
+        try {
+            Object data = result.get();
+            return data instanceof PooledPayload ? (PooledPayload)data : null;
+        } catch (ChainLoaderException e) {
+            return null;
+        }
+    }
+}
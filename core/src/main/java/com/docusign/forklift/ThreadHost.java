@@ -0,0 +1,77 @@
+package com.docusign.forklift;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A {@link Host} that runs everything posted to it on a single thread of its own, like a Looper off Android. The thread is a daemon,
+ * so an idle host doesn't keep the JVM alive; call {@link #quit()} when done with it to stop it sooner.
+ *
+ * A posted Runnable that throws is reported to the thread's uncaught exception handler, and the host carries on with the next one.
+ * Once the host has quit, or its thread has died, anything posted to it is dropped, as a Handler drops what's posted to a Looper
+ * that has quit: a worker thread finishing a delivery after its host is gone has nobody to tell.
+ */
+public class ThreadHost implements Host {
+
+    private final LinkedBlockingQueue<Runnable> mQueue = new LinkedBlockingQueue<Runnable>();
+    private final Thread mThread;
+    private volatile boolean mQuitting;
+
+    public ThreadHost(String name) {
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, name);
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    private void loop() {
+        try {
+            while (!mQuitting) {
+                Runnable runnable;
+                try {
+                    runnable = mQueue.take();
+                } catch (InterruptedException e) {
+                    continue; // only quit() gets us out
+                }
+
+                try {
+                    runnable.run();
+                } catch (RuntimeException e) {
+                    // one broken listener mustn't take everybody else's deliveries down with it
+                    mThread.getUncaughtExceptionHandler().uncaughtException(mThread, e);
+                }
+            }
+        } finally {
+            mQuitting = true; // if an Error got us here, nothing posted from now on would ever run
+        }
+    }
+
+    /** @inheritDoc */
+    @Override
+    public void post(Runnable runnable) {
+        if (runnable == null)
+            throw new NullPointerException("runnable must not be null");
+        if (mQuitting)
+            return; // nothing would ever run it
+
+        mQueue.offer(runnable);
+    }
+
+    /**
+     * @return true if the calling thread is this host's thread.
+     */
+    public boolean isCurrentThread() {
+        return Thread.currentThread() == mThread;
+    }
+
+    /**
+     * Stops the host's thread once whatever it's running now is done. Anything still queued, or posted from now on, is dropped.
+     */
+    public void quit() {
+        mQuitting = true;
+        mThread.interrupt();
+    }
+}
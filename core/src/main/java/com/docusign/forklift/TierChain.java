@@ -0,0 +1,254 @@
+package com.docusign.forklift;
+
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Composes any number of sources for the same data, fastest first (typically memory, then disk, then the network), into a single
+ * load: each {@link Tier} is tried in turn until one has the data, and the tiers before it are then given the data to
+ * {@link Tier#store(Object) keep}, so the next load stops earlier.
+ *
+ * The whole load runs on one thread, the one calling {@link #load()}: there's no hop to another executor between tiers, and a chain
+ * of any length is one loader rather than one per tier. On Android, wrap it in a {@code TieredLoader}.
+ *
+ * A tier that misses, fails or runs out of time falls through to the next one. If none of them has the data, the load fails with
+ * the last tier's failure, if any. Timeouts are for tiers that block on something slow and interruptible, like the network; a tier
+ * that reads through a FileChannel, as the disk tier does, mustn't have one, since an interrupt closes the channel for good.
+ *
+ * <pre>
+ * TierChain&lt;Doc&gt; chain = TierChain.&lt;Doc&gt;builder()
+ *         .add(memoryTier)
+ *         .add(diskTier)
+ *         .add(networkTier, 10, TimeUnit.SECONDS)
+ *         .build();
+ * </pre>
+ *
+ * @param <T> The type of data loaded
+ */
+public final class TierChain<T> {
+
+    /**
+     * One source of the data.
+     */
+    public static abstract class Tier<T> {
+
+        /**
+         * Can be thrown by {@link #load()} if this tier doesn't have the data, so the next one should be tried.
+         */
+        protected static final NoResultException NO_RESULT = new NoResultException();
+
+        /**
+         * Loads the data from this tier, on the thread running the chain. If the tier has a timeout, the thread is interrupted once it
+         * runs out, so blocking here interruptibly (rather than, say, on a plain socket read) is what lets the load move on in time.
+         * @throws ChainLoaderException If the data couldn't be loaded. Can throw NO_RESULT if this tier just doesn't have it.
+         */
+        public abstract T load() throws ChainLoaderException;
+
+        /**
+         * Called with the data a later tier loaded, on the thread running the chain and before the data is returned, so the next
+         * load finds it here. Should be quick, or hand the work off. A write-back that fails is the tier's own business: anything
+         * it throws is ignored. Does nothing by default.
+         */
+        public void store(T data) { }
+    }
+
+    /**
+     * Collects tiers, fastest first.
+     */
+    public static final class Builder<T> {
+        private final ArrayList<Stage<T>> mStages = new ArrayList<Stage<T>>();
+
+        private Builder() { }
+
+        /**
+         * Adds a tier that has as long as it takes.
+         */
+        public Builder<T> add(Tier<T> tier) {
+            return add(tier, 0, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Adds a tier that is given up on once the given time has elapsed, falling through to the next one. The tier's thread is
+         * interrupted when it runs out, so the tier mustn't do I/O on an interruptible channel, such as a FileChannel, which the
+         * interrupt would close.
+         * @param timeout How long the tier has, or 0 for as long as it takes.
+         */
+        public Builder<T> add(Tier<T> tier, long timeout, TimeUnit unit) {
+            if (tier == null)
+                throw new NullPointerException("tier must not be null");
+            if (timeout < 0)
+                throw new IllegalArgumentException("timeout must not be negative");
+
+            mStages.add(new Stage<T>(tier, unit.toNanos(timeout)));
+            return this;
+        }
+
+        public TierChain<T> build() {
+            if (mStages.isEmpty())
+                throw new IllegalStateException("A TierChain needs at least one tier");
+
+            return new TierChain<T>(mStages);
+        }
+    }
+
+    // a tier, and how long it has
+    private static final class Stage<T> {
+        final Tier<T> mTier;
+        final long mTimeoutNanos; // 0 for no timeout
+
+        Stage(Tier<T> tier, long timeoutNanos) {
+            mTier = tier;
+            mTimeoutNanos = timeoutNanos;
+        }
+    }
+
+    // interrupts a tier's thread once it runs out of time, unless the tier finished first
+    private static final class Alarm implements Runnable {
+        private static final int ARMED = 0, FIRED = 1, DISARMED = 2;
+
+        private final Thread mThread;
+        private int mState = ARMED; // guarded by this
+
+        Alarm(Thread thread) {
+            mThread = thread;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (mState == ARMED) {
+                mState = FIRED;
+                mThread.interrupt();
+            }
+        }
+
+        /**
+         * @return true if the alarm went off before it could be disarmed, in which case the interrupt has already been sent.
+         */
+        synchronized boolean disarm() {
+            if (mState == ARMED)
+                mState = DISARMED;
+            return mState == FIRED;
+        }
+    }
+
+    // only loaded once a tier with a timeout runs
+    /* package */ static final class Watchdog {
+        static final ScheduledThreadPoolExecutor sInstance = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Forklift Tier Watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // whether a disarmed alarm leaves the queue when it's cancelled, rather than at its deadline, holding on to its thread
+        // until then; Android only has the policy from API 21, and older ones have to remove it themselves
+        static final boolean sRemovesOnCancel;
+
+        static {
+            boolean removes;
+            try {
+                sInstance.setRemoveOnCancelPolicy(true);
+                removes = true;
+            } catch (NoSuchMethodError e) {
+                removes = false;
+            }
+            sRemovesOnCancel = removes;
+        }
+    }
+
+    private final Stage<T>[] mStages;
+
+    private TierChain(ArrayList<Stage<T>> stages) {
+        @SuppressWarnings({ "unchecked", "rawtypes" }) // no generic array creation
+        Stage<T>[] array = stages.toArray(new Stage[stages.size()]);
+        mStages = array;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<T>();
+    }
+
+    /**
+     * @return How many tiers this chain has.
+     */
+    public int size() {
+        return mStages.length;
+    }
+
+    /**
+     * Runs the chain on the calling thread: tries each tier in turn until one has the data, then writes it back to the tiers before.
+     * @return The data, from the first tier that had it.
+     * @throws LoadCancelledException If a tier was cancelled; the tiers after it aren't tried.
+     * @throws ChainLoaderException If no tier had the data: the last tier's failure, or a plain ChainLoaderException if they all
+     *                              just missed.
+     */
+    public T load() throws ChainLoaderException {
+        ChainLoaderException failure = null;
+        for (int i = 0; i < mStages.length; i++) {
+            T data;
+            Tier<T> tier = mStages[i].mTier;
+            TraceRecorder.begin("tier", tier);
+            try {
+                data = load(i);
+            } catch (NoResultException nores) {
+                continue;
+            } catch (LoadCancelledException e) {
+                throw e;
+            } catch (ChainLoaderException e) {
+                failure = e;
+                continue;
+            } finally {
+                TraceRecorder.end("tier", tier);
+            }
+
+            writeBack(i, data);
+            return data;
+        }
+
+        if (failure != null)
+            throw failure;
+        throw new ChainLoaderException("None of the " + mStages.length + " tiers had a result");
+    }
+
+    private T load(int index) throws ChainLoaderException {
+        Stage<T> stage = mStages[index];
+        if (stage.mTimeoutNanos == 0)
+            return stage.mTier.load();
+
+        // an interrupt from somebody else is theirs to have handled, whatever ours does
+        boolean interrupted = Thread.currentThread().isInterrupted();
+        Alarm alarm = new Alarm(Thread.currentThread());
+        ScheduledFuture<?> scheduled = Watchdog.sInstance.schedule(alarm, stage.mTimeoutNanos, TimeUnit.NANOSECONDS);
+        try {
+            return stage.mTier.load(); // even if it's late: it's here now
+        } catch (NoResultException nores) {
+            throw nores; // a miss is a miss, however long it took
+        } catch (ChainLoaderException e) {
+            if (!alarm.disarm())
+                throw e;
+
+            throw new TierTimeoutException("Tier " + index + " of " + mStages.length + " timed out after "
+                    + TimeUnit.NANOSECONDS.toMillis(stage.mTimeoutNanos) + "ms", e);
+        } finally {
+            if (scheduled.cancel(false) && !Watchdog.sRemovesOnCancel)
+                Watchdog.sInstance.remove((Runnable)scheduled);
+            if (alarm.disarm()) {
+                Thread.interrupted(); // the interrupt was ours, and the tier that got it is done with it
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void writeBack(int answered, T data) {
+        for (int i = 0; i < answered; i++) {
+            try {
+                mStages[i].mTier.store(data);
+            } catch (RuntimeException ignored) { }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.docusign.forklift;
+
+/**
+ * Thrown in place of whatever a tier of a {@link TierChain} threw once it had run out of time, so that the load fell through to the
+ * next tier. Only surfaces if none of the later tiers had a result either.
+ */
+public class TierTimeoutException extends ChainLoaderException {
+    private static final long serialVersionUID = 4127385513820916431L;
+
+    public TierTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,258 @@
+package com.docusign.forklift;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records what loaders are doing, event by event, into a fixed-size ring buffer that can be exported as
+ * <a href="https://docs.google.com/document/d/1CvAClvFfyA5R-PhYUmn5OOQtYMH4h6I0nSsKchNAySU">Chrome Trace Event</a> JSON, and
+ * opened in chrome://tracing or Perfetto to see individual chain executions on a timeline.
+ *
+ * Install one with {@link #setCurrent(TraceRecorder)}. With none installed (the default), tracing costs a single volatile read per
+ * event. With one installed, recording an event allocates nothing: it claims the next slot with an atomic increment and writes it in
+ * place, overwriting the oldest event once the buffer is full.
+ *
+ * What gets recorded:
+ * <ul>
+ *     <li>Each chained loader's LOADING_SELF and LOADING_CHAIN states, as async spans keyed by the loader, and its moves
+ *     back to INITIALIZED or on to ALL_LOADS_COMPLETE as instants.</li>
+ *     <li>Each loader's {@code doLoad()}, on whichever thread ran it.</li>
+ *     <li>Each chained result's wait in its loader's fallback delivery lane, as an async span, and
+ *     {@code onFallbackDelivered()}, on the delivery thread that ran it.</li>
+ * </ul>
+ */
+public final class TraceRecorder {
+
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private static final String CATEGORY = "forklift";
+
+    private static final byte PHASE_BEGIN = 'B';
+    private static final byte PHASE_END = 'E';
+    private static final byte PHASE_ASYNC_BEGIN = 'b';
+    private static final byte PHASE_ASYNC_END = 'e';
+    private static final byte PHASE_ASYNC_INSTANT = 'n';
+
+    private static volatile TraceRecorder sCurrent;
+
+    private final int mMask;
+    private final AtomicLong mNext = new AtomicLong();
+    // the sequence number each slot holds, or -1 while it's being (re)written
+    private final AtomicLongArray mPublished;
+    private final long[] mTimestamps;
+    private final byte[] mPhases;
+    private final String[] mNames;
+    private final Class<?>[] mOwners;
+    private final int[] mIds;
+    private final long[] mThreadIds;
+    private final String[] mThreadNames;
+
+    public TraceRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity How many events to keep; rounded up to a power of two.
+     */
+    public TraceRecorder(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 24)
+            throw new IllegalArgumentException("capacity must be between 1 and 2^24");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+
+        mMask = size - 1;
+        mPublished = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            mPublished.set(i, -1);
+        mTimestamps = new long[size];
+        mPhases = new byte[size];
+        mNames = new String[size];
+        mOwners = new Class<?>[size];
+        mIds = new int[size];
+        mThreadIds = new long[size];
+        mThreadNames = new String[size];
+    }
+
+    /**
+     * Installs the recorder that receives every event from now on, replacing any previous one.
+     * @param recorder The recorder, or null to stop tracing altogether.
+     */
+    public static void setCurrent(TraceRecorder recorder) {
+        sCurrent = recorder;
+    }
+
+    public static TraceRecorder getCurrent() {
+        return sCurrent;
+    }
+
+    /* package */ static void begin(String name, Object owner) {
+        TraceRecorder recorder = sCurrent;
+        if (recorder != null)
+            recorder.record(PHASE_BEGIN, name, owner, 0);
+    }
+
+    /* package */ static void end(String name, Object owner) {
+        TraceRecorder recorder = sCurrent;
+        if (recorder != null)
+            recorder.record(PHASE_END, name, owner, 0);
+    }
+
+    /**
+     * Starts a span that may end on another thread. It's matched to its {@link #asyncEnd(String, Object, Object)} by name and id.
+     */
+    /* package */ static void asyncBegin(String name, Object owner, Object id) {
+        TraceRecorder recorder = sCurrent;
+        if (recorder != null)
+            recorder.record(PHASE_ASYNC_BEGIN, name, owner, System.identityHashCode(id));
+    }
+
+    /* package */ static void asyncEnd(String name, Object owner, Object id) {
+        TraceRecorder recorder = sCurrent;
+        if (recorder != null)
+            recorder.record(PHASE_ASYNC_END, name, owner, System.identityHashCode(id));
+    }
+
+    /* package */ static void asyncInstant(String name, Object owner, Object id) {
+        TraceRecorder recorder = sCurrent;
+        if (recorder != null)
+            recorder.record(PHASE_ASYNC_INSTANT, name, owner, System.identityHashCode(id));
+    }
+
+    private void record(byte phase, String name, Object owner, int id) {
+        long timestamp = System.nanoTime();
+        Thread thread = Thread.currentThread();
+        long seq = mNext.getAndIncrement();
+        int slot = (int)(seq & mMask);
+
+        mPublished.set(slot, -1);
+        mTimestamps[slot] = timestamp;
+        mPhases[slot] = phase;
+        mNames[slot] = name;
+        mOwners[slot] = owner == null ? null : owner.getClass();
+        mIds[slot] = id;
+        mThreadIds[slot] = thread.getId();
+        mThreadNames[slot] = thread.getName();
+        mPublished.set(slot, seq);
+    }
+
+    /**
+     * @return How many events are in the buffer.
+     */
+    public int getEventCount() {
+        return (int)Math.min(mNext.get(), mMask + 1);
+    }
+
+    /**
+     * @return How many events have been overwritten because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return Math.max(0, mNext.get() - (mMask + 1));
+    }
+
+    /**
+     * Forgets every event recorded so far. Events recorded while this runs may or may not survive.
+     */
+    public void clear() {
+        for (int i = 0; i <= mMask; i++)
+            mPublished.set(i, -1);
+        mNext.set(0);
+    }
+
+    /**
+     * Writes the events in the buffer, oldest first, as a Chrome Trace Event JSON object. Best done once recording is over (e.g. after
+     * {@link #setCurrent(TraceRecorder) setCurrent(null)}); events that are overwritten while this runs are left out.
+     */
+    public void writeJson(Writer out) throws IOException {
+        long end = mNext.get();
+        long start = Math.max(0, end - (mMask + 1));
+        HashSet<Long> namedThreads = new HashSet<Long>();
+        boolean first = true;
+
+        out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        for (long seq = start; seq < end; seq++) {
+            int slot = (int)(seq & mMask);
+            if (mPublished.get(slot) != seq)
+                continue;
+
+            long timestamp = mTimestamps[slot];
+            char phase = (char)mPhases[slot];
+            String name = mNames[slot];
+            Class<?> owner = mOwners[slot];
+            int id = mIds[slot];
+            long threadId = mThreadIds[slot];
+            String threadName = mThreadNames[slot];
+            if (mPublished.get(slot) != seq)
+                continue; // overwritten while we were reading it
+
+            if (namedThreads.add(threadId)) {
+                first = separate(out, first);
+                out.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + threadId + ",\"args\":{\"name\":");
+                writeString(out, threadName);
+                out.write("}}");
+            }
+
+            first = separate(out, first);
+            out.write("{\"name\":");
+            writeString(out, name);
+            out.write(",\"cat\":\"" + CATEGORY + "\",\"ph\":\"" + phase + "\",\"ts\":"
+                    + String.format(Locale.US, "%.3f", timestamp / 1000.0) + ",\"pid\":1,\"tid\":" + threadId);
+            if (phase == PHASE_ASYNC_BEGIN || phase == PHASE_ASYNC_END || phase == PHASE_ASYNC_INSTANT)
+                out.write(",\"id\":\"0x" + Integer.toHexString(id) + "\"");
+            if (owner != null) {
+                out.write(",\"args\":{\"loader\":");
+                writeString(out, owner.getName());
+                out.write("}");
+            }
+            out.write("}");
+        }
+        out.write("]}");
+    }
+
+    /**
+     * @return The events in the buffer as Chrome Trace Event JSON.
+     * @see #writeJson(Writer)
+     */
+    public String toJson() {
+        StringWriter json = new StringWriter();
+        try {
+            writeJson(json);
+        } catch (IOException e) {
+            throw new AssertionError(e); // StringWriter doesn't throw
+        }
+        return json.toString();
+    }
+
+    private static boolean separate(Writer out, boolean first) throws IOException {
+        if (!first)
+            out.write(",\n");
+        return false;
+    }
+
+    private static void writeString(Writer out, String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format(Locale.US, "\\u%04x", (int)c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,82 @@
+package com.docusign.forklift;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Opt-in execution on virtual threads, for JVMs that have them (JDK 21 and up; never Android).
+ *
+ * Once {@link #setEnabled(boolean) enabled}, fallback deliveries each run on a fresh virtual thread instead of on a fixed pool, so
+ * thousands of deliveries blocked on I/O don't need thousands of platform threads. Each loader's deliveries still run one at a time,
+ * in order: it's the lanes that are handed to the virtual threads, not the deliveries themselves.
+ *
+ * Loads are run wherever the caller runs them. To make blocking ones, like {@link TierChain#load()}, cheap too, run them on
+ * {@link #executor()}.
+ */
+public final class VirtualThreads {
+
+    private static final Executor sExecutor = create();
+    private static volatile boolean sEnabled;
+
+    private VirtualThreads() { }
+
+    // Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Forklift Virtual #", 1).factory()), for whoever has it
+    private static Executor create() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "Forklift Virtual #", 1L);
+            ThreadFactory factory = (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+            Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (Executor)perTask.invoke(null, factory);
+        } catch (Exception e) {
+            return null; // not on this JVM
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if this JVM has virtual threads.
+     */
+    public static boolean isSupported() {
+        return sExecutor != null;
+    }
+
+    /**
+     * Switches fallback deliveries onto virtual threads, or back onto the pools. Takes effect for work scheduled
+     * from now on; whatever is already running or queued finishes where it is.
+     * @throws UnsupportedOperationException If enabling, and this JVM has no virtual threads.
+     */
+    public static void setEnabled(boolean enabled) {
+        if (enabled && sExecutor == null)
+            throw new UnsupportedOperationException("Virtual threads need JDK 21 or later");
+
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * @return An executor that runs each task on a new virtual thread, whether or not they're {@link #isEnabled() enabled} for
+     *         Forklift's own work.
+     * @throws UnsupportedOperationException If this JVM has no virtual threads.
+     */
+    public static Executor executor() {
+        if (sExecutor == null)
+            throw new UnsupportedOperationException("Virtual threads need JDK 21 or later");
+
+        return sExecutor;
+    }
+
+    /**
+     * @return The virtual-thread executor if enabled, or null to use the regular pools.
+     */
+    /* package */ static Executor enabledExecutor() {
+        return sEnabled ? sExecutor : null;
+    }
+}
@@ -0,0 +1,264 @@
+package com.docusign.forklift;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+public class DeliveryLimitsTest extends TestCase {
+
+    // holds up processing until released; collects what it delivers, and the failures it's handed, as strings
+    private static class LimitedWorker extends DeliveryWorker<Object> {
+        final CountDownLatch mPickedUp = new CountDownLatch(1);
+        final CountDownLatch mRelease = new CountDownLatch(1);
+        final List<String> mDelivered = new ArrayList<String>(); // host thread only
+
+        private LimitedWorker(Host host) {
+            this(host, null);
+        }
+
+        private LimitedWorker(Host host, Executor deliveryExecutor) {
+            super("LimitedWorker", deliveryExecutor, host);
+        }
+
+        @Override
+        protected Result<Object> process(Result<Object> data, long queuedAt) {
+            mPickedUp.countDown();
+            try {
+                mRelease.await();
+            } catch (InterruptedException e) {
+                return Result.failure(new ChainLoaderException(e));
+            }
+            return data;
+        }
+
+        @Override
+        protected void deliver(Result<Object> result, long readyAt) {
+            record(result);
+        }
+
+        @Override
+        protected void discard(Result<Object> data) { }
+
+        @Override
+        protected void fail(Result<Object> failure) {
+            record(failure);
+        }
+
+        private void record(Result<Object> result) {
+            try {
+                mDelivered.add(String.valueOf(result.get()));
+            } catch (ChainLoaderException e) {
+                mDelivered.add(e instanceof DeliveryOverflowException ? "overflow" : e.toString());
+            }
+        }
+    }
+
+    private ThreadHost mHost;
+    private Thread.UncaughtExceptionHandler mDefaultHandler;
+    private final List<Throwable> mUncaught = new ArrayList<Throwable>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // whatever throws on a delivery or host thread would otherwise go unnoticed
+        mDefaultHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                synchronized (mUncaught) {
+                    mUncaught.add(e);
+                }
+            }
+        });
+        mHost = new ThreadHost("DeliveryLimitsTest host");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DeliveryLimits.setGlobalCapacity(Integer.MAX_VALUE);
+        mHost.quit();
+        Thread.setDefaultUncaughtExceptionHandler(mDefaultHandler);
+        synchronized (mUncaught) {
+            assertEquals("Uncaught on another thread: " + mUncaught, 0, mUncaught.size());
+        }
+        super.tearDown();
+    }
+
+    /**
+     * Offers a burst of results on the host, as a chained loader would: "p1", then, once it's been picked up, "p2" to "p5" and
+     * "complete".
+     * @return Counted down on the host once everything offered has been through the lane.
+     */
+    private CountDownLatch burst(final LimitedWorker worker, final int capacity, final OverflowPolicy policy) {
+        final CountDownLatch done = new CountDownLatch(1);
+        mHost.post(new Runnable() {
+            @Override
+            public void run() {
+                worker.offer(Result.<Object>partial("p1"), capacity, policy);
+                try {
+                    worker.mPickedUp.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                for (int i = 2; i <= 5; i++)
+                    worker.offer(Result.<Object>partial("p" + i), capacity, policy);
+                worker.offer(Result.<Object>success("complete"), capacity, policy);
+
+                // through the lane, so that it's only reported after every result before it
+                worker.getLane().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mHost.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                done.countDown();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+        return done;
+    }
+
+    private static void checkDeadline(long deadline) throws InterruptedException {
+        assertTrue("timed out", System.currentTimeMillis() < deadline);
+        Thread.sleep(5);
+    }
+
+    public void testFail() throws Exception {
+        long failed = DeliveryLimits.getFailedCount();
+        LimitedWorker worker = new LimitedWorker(mHost);
+        CountDownLatch done = burst(worker, 2, OverflowPolicy.FAIL);
+
+        // p1 is being processed, p2 waits behind it; there's no room for p3 to p5 or the complete result
+        long deadline = System.currentTimeMillis() + 5000;
+        while (DeliveryLimits.getFailedCount() - failed < 4)
+            checkDeadline(deadline);
+        assertEquals(2, worker.getPending());
+        worker.mRelease.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("overflow", "overflow", "overflow", "overflow", "p1", "p2"), worker.mDelivered);
+        assertEquals(4, DeliveryLimits.getFailedCount() - failed);
+        assertEquals(0, worker.getPending());
+    }
+
+    public void testDropOldestPartial() throws Exception {
+        long dropped = DeliveryLimits.getDroppedCount();
+        LimitedWorker worker = new LimitedWorker(mHost);
+        CountDownLatch done = burst(worker, 2, OverflowPolicy.DROP_OLDEST_PARTIAL);
+
+        // p1 has started, so it stays; each newer result pushes out the partial waiting behind it
+        long deadline = System.currentTimeMillis() + 5000;
+        while (DeliveryLimits.getDroppedCount() - dropped < 4)
+            checkDeadline(deadline);
+        worker.mRelease.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("p1", "complete"), worker.mDelivered);
+        assertEquals(4, DeliveryLimits.getDroppedCount() - dropped);
+    }
+
+    public void testBlock() throws Exception {
+        long blocked = DeliveryLimits.getBlockedCount();
+        LimitedWorker worker = new LimitedWorker(mHost);
+        CountDownLatch done = burst(worker, 1, OverflowPolicy.BLOCK);
+
+        // the host is held up until p1 is out of the way
+        long deadline = System.currentTimeMillis() + 5000;
+        while (DeliveryLimits.getBlockedCount() == blocked)
+            checkDeadline(deadline);
+        worker.mRelease.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("p1", "p2", "p3", "p4", "p5", "complete"), worker.mDelivered);
+        assertTrue(DeliveryLimits.getBlockedCount() - blocked >= 1);
+    }
+
+    public void testHostQuitWhileDeliveryPending() throws Exception {
+        // a thread per delivery, so we know when each is done, uncaught exceptions and all
+        final List<Thread> threads = new ArrayList<Thread>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                Thread thread = new Thread(command);
+                synchronized (threads) {
+                    threads.add(thread);
+                }
+                thread.start();
+            }
+        };
+        final LimitedWorker worker = new LimitedWorker(mHost, executor);
+        mHost.post(new Runnable() {
+            @Override
+            public void run() {
+                worker.offer(Result.<Object>success("complete"), Integer.MAX_VALUE, OverflowPolicy.FAIL);
+            }
+        });
+        assertTrue(worker.mPickedUp.await(5, TimeUnit.SECONDS));
+
+        // the host goes away while the result is still being processed
+        mHost.quit();
+        worker.mRelease.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (worker.getPending() > 0)
+            checkDeadline(deadline);
+        synchronized (threads) {
+            for (Thread thread : threads) {
+                thread.join(5000);
+                assertFalse(thread.isAlive());
+            }
+        }
+        assertTrue(worker.mDelivered.isEmpty());
+    }
+
+    public void testGlobalCapacity() {
+        DeliveryLimits.Gate first = new DeliveryLimits.Gate();
+        DeliveryLimits.Gate second = new DeliveryLimits.Gate();
+        int pending = DeliveryLimits.getGlobalPending();
+        DeliveryLimits.setGlobalCapacity(pending + 1);
+
+        assertTrue(first.tryAcquire(Integer.MAX_VALUE));
+        assertFalse(second.tryAcquire(Integer.MAX_VALUE));
+        assertEquals(0, second.getPending());
+
+        first.release();
+        assertTrue(second.tryAcquire(Integer.MAX_VALUE));
+        second.release();
+        assertEquals(pending, DeliveryLimits.getGlobalPending());
+    }
+
+    public void testBlockedAcquireWaitsForRelease() throws Exception {
+        final DeliveryLimits.Gate gate = new DeliveryLimits.Gate();
+        assertTrue(gate.tryAcquire(1));
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                gate.acquire(1);
+            }
+        });
+        waiter.start();
+
+        // parked until notified, rather than polling
+        long deadline = System.currentTimeMillis() + 5000;
+        while (waiter.getState() != Thread.State.WAITING) {
+            assertTrue("Waiter is " + waiter.getState(), waiter.getState() != Thread.State.TIMED_WAITING
+                    && waiter.getState() != Thread.State.TERMINATED);
+            checkDeadline(deadline);
+        }
+        assertEquals(1, gate.getPending());
+
+        gate.release();
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+        assertEquals(1, gate.getPending());
+        gate.release();
+    }
+}
@@ -0,0 +1,92 @@
+package com.docusign.forklift;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DeliveryPoolSizingTest extends TestCase {
+    private static final long KEEP_ALIVE_MILLIS = 50;
+
+    private FallbackDeliveryExecutor mPool;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPool = new FallbackDeliveryExecutor(1, 4, KEEP_ALIVE_MILLIS);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPool.shutdownNow();
+        super.tearDown();
+    }
+
+    private static void awaitPoolSize(FallbackDeliveryExecutor pool, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getPoolSize() != size) {
+            assertTrue("pool still has " + pool.getPoolSize() + " threads", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    public void testNoThreadsUntilUsed() throws Exception {
+        assertEquals(0, mPool.getPoolSize());
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        new FallbackDeliveryExecutor.SerialExecutor(mPool).execute(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertEquals(1, mPool.getLargestPoolSize());
+    }
+
+    public void testGrowsWithQueueAndRetiresWhenIdle() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            new FallbackDeliveryExecutor.SerialExecutor(mPool).execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                    done.countDown();
+                }
+            });
+        }
+
+        // ten lanes backed up behind a single core thread: the pool grows to its maximum
+        awaitPoolSize(mPool, 4);
+        assertEquals(4, mPool.getCorePoolSize());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // and once drained, it shrinks back, all the way to nothing once idle
+        awaitPoolSize(mPool, 0);
+        assertEquals(1, mPool.getCorePoolSize());
+    }
+
+    public void testSharedPoolIsReplacedAfterShutdown() throws Exception {
+        FallbackDeliveryExecutor pool = FallbackDeliveryExecutor.sharedPool();
+        assertSame(pool, FallbackDeliveryExecutor.peekSharedPool());
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        new FallbackDeliveryExecutor.SerialExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertNotSame(pool, FallbackDeliveryExecutor.peekSharedPool());
+    }
+}
@@ -0,0 +1,109 @@
+package com.docusign.forklift;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DeliveryPriorityTest extends TestCase {
+    private static final int POOL_THREADS = Runtime.getRuntime().availableProcessors() + 1;
+    private static final long JOB_MILLIS = 5;
+
+    private volatile boolean mFlooding;
+    private final AtomicInteger mFloodRunning = new AtomicInteger();
+
+    // keeps the shared pool saturated with lanes of the given priority, each always having another delivery queued
+    private void flood(int priority) {
+        mFlooding = true;
+        for (int i = 0; i < 20 * POOL_THREADS; i++) {
+            final FallbackDeliveryExecutor.SerialExecutor lane = new FallbackDeliveryExecutor.SerialExecutor();
+            lane.setPriority(priority);
+            mFloodRunning.incrementAndGet();
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    sleep(JOB_MILLIS);
+                    if (mFlooding)
+                        lane.execute(this);
+                    else
+                        mFloodRunning.decrementAndGet();
+                }
+            });
+        }
+        sleep(200); // let it settle into a steady state
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFlooding = false;
+        while (mFloodRunning.get() > 0)
+            Thread.sleep(10);
+        super.tearDown();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // how long a delivery on a fresh lane of the given priority waits to start, averaged over a few tries
+    private static long probeMillis(int priority) throws InterruptedException {
+        long total = 0;
+        for (int i = 0; i < 5; i++) {
+            FallbackDeliveryExecutor.SerialExecutor lane = new FallbackDeliveryExecutor.SerialExecutor();
+            lane.setPriority(priority);
+            final CountDownLatch ran = new CountDownLatch(1);
+            long start = System.nanoTime();
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.countDown();
+                }
+            });
+            assertTrue(ran.await(10, TimeUnit.SECONDS));
+            total += System.nanoTime() - start;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(total / 5);
+    }
+
+    public void testVisibleJumpsBackgroundFlood() throws Exception {
+        flood(DeliveryPriority.BACKGROUND);
+
+        long background = probeMillis(DeliveryPriority.BACKGROUND);
+        long visible = probeMillis(DeliveryPriority.VISIBLE);
+        assertTrue("visible waited " + visible + "ms, background " + background + "ms", visible * 3 < background);
+    }
+
+    public void testBackgroundIsNotStarved() throws Exception {
+        flood(DeliveryPriority.VISIBLE);
+
+        long background = probeMillis(DeliveryPriority.BACKGROUND);
+        long agingMillis = TimeUnit.NANOSECONDS.toMillis(FallbackDeliveryExecutor.AGING_NANOS);
+        // held back by about one head start per level between it and the flood, and no more
+        assertTrue("background waited " + background + "ms", background < 2 * agingMillis + 1000);
+    }
+
+    public void testOrderWithinLaneIgnoresPriority() throws Exception {
+        final FallbackDeliveryExecutor.SerialExecutor lane = new FallbackDeliveryExecutor.SerialExecutor();
+        final StringBuilder order = new StringBuilder();
+        final CountDownLatch done = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            final int job = i;
+            lane.setPriority(job % 2 == 0 ? DeliveryPriority.VISIBLE : DeliveryPriority.BACKGROUND);
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    order.append(job);
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("0123456789", order.toString());
+    }
+}
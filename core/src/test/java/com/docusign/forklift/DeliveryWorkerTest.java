@@ -0,0 +1,239 @@
+package com.docusign.forklift;
+
+import junit.framework.TestCase;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+public class DeliveryWorkerTest extends TestCase {
+    private static final int CAPACITY = Integer.MAX_VALUE;
+    private static final int DELIVERIES = 100000;
+
+    private static final Executor INLINE = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    // runs what it's posted right away, so that the worker is all that's being counted
+    private static class InlineHost implements Host {
+        @Override
+        public void post(Runnable runnable) {
+            runnable.run();
+        }
+    }
+
+    // holds on to what it's posted, so that a test decides when it runs
+    private static class QueueHost implements Host {
+        final ArrayList<Runnable> mPosted = new ArrayList<Runnable>();
+
+        @Override
+        public void post(Runnable runnable) {
+            mPosted.add(runnable);
+        }
+
+        void runAll() {
+            for (int i = 0; i < mPosted.size(); i++)
+                mPosted.get(i).run();
+            mPosted.clear();
+        }
+    }
+
+    private static class RecordingWorker extends DeliveryWorker<Object> {
+        final List<Object> mDelivered = new ArrayList<Object>();
+        RuntimeException mThrow; // thrown by process() if set
+        final List<Object> mDiscarded = new ArrayList<Object>();
+        final List<Object> mFailed = new ArrayList<Object>();
+        int mDeliveredCount;
+
+        RecordingWorker(Executor deliveryExecutor, Host host) {
+            super(null, deliveryExecutor, host);
+        }
+
+        @Override
+        protected Result<Object> process(Result<Object> data, long queuedAt) {
+            if (mThrow != null)
+                throw mThrow;
+            return data;
+        }
+
+        @Override
+        protected void deliver(Result<Object> result, long readyAt) {
+            mDeliveredCount++;
+            if (mDelivered.size() < 16)
+                mDelivered.add(result);
+        }
+
+        @Override
+        protected void discard(Result<Object> data) {
+            mDiscarded.add(data);
+        }
+
+        @Override
+        protected void fail(Result<Object> failure) {
+            mFailed.add(failure);
+        }
+    }
+
+    private static Result<Object> partial(Object data) {
+        return new Result<Object>(data, null, Result.Type.PARTIAL);
+    }
+
+    private static void enqueue(DeliveryWorker<Object> worker, Result<Object> data) {
+        assertTrue(worker.offer(data, CAPACITY, OverflowPolicy.FAIL));
+    }
+
+    // only the worker's own overhead: RecordingWorker.process() passes its input straight through, whereas a loader's real one
+    // allocates at least the Result it returns
+    public void testWorkerAllocatesNothingPerDelivery() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+            return; // can't count allocations on this JVM
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+            return;
+
+        RecordingWorker worker = new RecordingWorker(INLINE, new InlineHost());
+        Result<Object> result = partial(this);
+        for (int i = 0; i < DELIVERIES; i++) // warm up, so that nothing's left to grow or compile
+            enqueue(worker, result);
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < DELIVERIES; i++)
+            enqueue(worker, result);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals(2 * DELIVERIES, worker.mDeliveredCount);
+        assertTrue(worker.getBarrier().isIdle());
+        assertEquals(0, worker.getPending());
+        // allow for the odd allocation by the JVM itself, but not for one per delivery
+        assertTrue("allocated " + allocated + " bytes over " + DELIVERIES + " deliveries", allocated < DELIVERIES);
+    }
+
+    public void testDeliversInOrderOnHost() {
+        QueueHost host = new QueueHost();
+        RecordingWorker worker = new RecordingWorker(INLINE, host);
+        List<Result<Object>> results = new ArrayList<Result<Object>>();
+        for (int i = 0; i < 5; i++) {
+            results.add(partial(i));
+            enqueue(worker, results.get(i));
+        }
+
+        assertTrue(worker.mDelivered.isEmpty());
+        assertEquals(0, worker.getPending()); // processed, so no longer pending
+        assertEquals(5, worker.getBarrier().getInFlight()); // but not delivered yet
+        host.runAll();
+        assertEquals(results, worker.mDelivered);
+        assertTrue(worker.getBarrier().isIdle());
+    }
+
+    public void testConflateAndDropOnlyTouchQueuedPartials() {
+        final QueueHost laneRuns = new QueueHost();
+        QueueHost host = new QueueHost();
+        RecordingWorker worker = new RecordingWorker(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                laneRuns.post(command);
+            }
+        }, host);
+
+        Result<Object> first = partial("first");
+        Result<Object> second = partial("second");
+        Result<Object> complete = new Result<Object>("complete", null, Result.Type.COMPLETE);
+        enqueue(worker, first);
+        assertSame(first, worker.conflate(second));
+        assertNull(worker.conflate(complete)); // only partials stand in for each other
+        enqueue(worker, complete);
+        assertNull(worker.conflate(partial("third"))); // the newest isn't a partial
+
+        assertSame(second, worker.dropOldestPartial());
+        assertNull(worker.dropOldestPartial());
+        assertEquals(1, worker.getPending());
+        assertEquals(1, worker.getQueuedCount());
+
+        laneRuns.runAll(); // the first run processes the complete one, the second finds nothing left
+        host.runAll();
+        assertEquals(1, worker.mDelivered.size());
+        assertSame(complete, worker.mDelivered.get(0));
+        assertTrue(worker.getBarrier().isIdle());
+    }
+
+    public void testCancelDiscardsQueuedAndReady() {
+        final QueueHost laneRuns = new QueueHost();
+        QueueHost host = new QueueHost();
+        RecordingWorker worker = new RecordingWorker(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                laneRuns.post(command);
+            }
+        }, host);
+
+        Result<Object> ready = partial("ready");
+        Result<Object> queued = partial("queued");
+        enqueue(worker, ready);
+        laneRuns.mPosted.remove(0).run(); // processed, waiting on the host
+        enqueue(worker, queued);
+
+        worker.cancel();
+        laneRuns.runAll();
+        host.runAll();
+
+        assertTrue(worker.mDelivered.isEmpty());
+        assertEquals(2, worker.mDiscarded.size());
+        assertTrue(worker.mDiscarded.contains(ready));
+        assertTrue(worker.mDiscarded.contains(queued));
+        assertEquals(0, worker.getPending());
+        assertTrue(worker.getBarrier().isIdle());
+    }
+
+    public void testRejectedDeliveryFailsInstead() {
+        QueueHost host = new QueueHost();
+        RecordingWorker worker = new RecordingWorker(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("shut down");
+            }
+        }, host);
+
+        Result<Object> refused = partial("refused");
+        assertFalse(worker.offer(refused, CAPACITY, OverflowPolicy.FAIL));
+
+        assertEquals(1, worker.mDiscarded.size());
+        assertSame(refused, worker.mDiscarded.get(0));
+        assertEquals(1, worker.mFailed.size());
+        assertEquals(Result.Type.FAILURE, ((Result<?>)worker.mFailed.get(0)).getType());
+        assertEquals(0, worker.getPending());
+        assertEquals(0, worker.getQueuedCount());
+        assertTrue(worker.getBarrier().isIdle());
+    }
+
+    public void testFailedProcessingDiscardsWhatWasQueued() {
+        final QueueHost laneRuns = new QueueHost();
+        QueueHost host = new QueueHost();
+        RecordingWorker worker = new RecordingWorker(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                laneRuns.post(command);
+            }
+        }, host);
+        worker.mThrow = new IllegalStateException("broken");
+
+        Result<Object> queued = partial("queued");
+        enqueue(worker, queued);
+        try {
+            laneRuns.runAll();
+            fail("process() didn't throw");
+        } catch (IllegalStateException expected) { }
+        host.runAll();
+
+        assertTrue(worker.mDelivered.isEmpty());
+        assertEquals(1, worker.mDiscarded.size());
+        assertSame(queued, worker.mDiscarded.get(0));
+        assertEquals(0, worker.getPending());
+        assertTrue(worker.getBarrier().isIdle());
+    }
+}
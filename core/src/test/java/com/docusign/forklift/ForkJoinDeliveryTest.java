@@ -0,0 +1,86 @@
+package com.docusign.forklift;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+public class ForkJoinDeliveryTest extends TestCase {
+
+    @Override
+    protected void tearDown() throws Exception {
+        ForkJoinDelivery.setEnabled(false);
+        super.tearDown();
+    }
+
+    public void testLanesRunOnForkJoinPool() throws Exception {
+        ForkJoinDelivery.setEnabled(true);
+        final Thread[] ranOn = new Thread[1];
+        final CountDownLatch ran = new CountDownLatch(1);
+        new FallbackDeliveryExecutor.SerialExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                ranOn[0] = Thread.currentThread();
+                ran.countDown();
+            }
+        });
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(ranOn[0] instanceof ForkJoinWorkerThread);
+        assertTrue(ranOn[0].isDaemon());
+    }
+
+    public void testLanesStaySerial() throws Exception {
+        ForkJoinDelivery.setEnabled(true);
+        final int lanes = 16;
+        final int jobs = 500;
+        final List<List<Integer>> orders = new ArrayList<List<Integer>>();
+        final CountDownLatch done = new CountDownLatch(lanes * jobs);
+        for (int l = 0; l < lanes; l++) {
+            FallbackDeliveryExecutor.SerialExecutor lane = new FallbackDeliveryExecutor.SerialExecutor();
+            final List<Integer> order = new ArrayList<Integer>();
+            orders.add(order);
+            for (int i = 0; i < jobs; i++) {
+                final int job = i;
+                lane.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        order.add(job); // unsynchronized on purpose: the lane runs one job at a time
+                        done.countDown();
+                    }
+                });
+            }
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (List<Integer> order : orders) {
+            for (int i = 0; i < jobs; i++)
+                assertEquals(i, (int)order.get(i));
+        }
+    }
+
+    public void testOwnExecutorWins() throws Exception {
+        ForkJoinDelivery.setEnabled(true);
+        final Thread[] ranOn = new Thread[1];
+        final CountDownLatch ran = new CountDownLatch(1);
+        new FallbackDeliveryExecutor.SerialExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }).execute(new Runnable() {
+            @Override
+            public void run() {
+                ranOn[0] = Thread.currentThread();
+                ran.countDown();
+            }
+        });
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertSame(Thread.currentThread(), ranOn[0]);
+    }
+}
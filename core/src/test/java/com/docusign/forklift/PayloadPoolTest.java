@@ -0,0 +1,130 @@
+package com.docusign.forklift;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PayloadPoolTest extends TestCase {
+
+    private PayloadPool mPool;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPool = new PayloadPool(64 * 1024, 256 * 1024);
+    }
+
+    public void testSizeClasses() {
+        assertEquals(256, mPool.acquire(1).array().length);
+        assertEquals(256, mPool.acquire(256).array().length);
+        assertEquals(512, mPool.acquire(257).array().length);
+        assertEquals(64 * 1024, mPool.acquire(64 * 1024).array().length);
+        // too big to pool
+        assertEquals(64 * 1024 + 1, mPool.acquire(64 * 1024 + 1).array().length);
+
+        PooledPayload payload = mPool.acquire(300);
+        assertEquals(300, payload.getLength());
+        payload.setLength(512);
+        try {
+            payload.setLength(513);
+            fail("Set a length past the end of the buffer");
+        } catch (IndexOutOfBoundsException e) {
+            // success
+        }
+    }
+
+    public void testRecyclesOnLastRelease() {
+        PooledPayload payload = mPool.acquire(1000);
+        byte[] array = payload.array();
+        payload.retain();
+
+        assertFalse(payload.release());
+        assertEquals(0, mPool.getRetainedBytes());
+        assertTrue(payload.release());
+        assertEquals(array.length, mPool.getRetainedBytes());
+
+        PooledPayload next = mPool.acquire(900); // same size class
+        assertSame(array, next.array());
+        assertEquals(1, mPool.getHitCount());
+        assertEquals(1, mPool.getMissCount());
+    }
+
+    public void testUseAfterRelease() {
+        PooledPayload payload = mPool.acquire(10);
+        payload.release();
+
+        try {
+            payload.array();
+            fail("Got at the buffer of a released payload");
+        } catch (IllegalStateException e) {
+            // success
+        }
+        try {
+            payload.retain();
+            fail("Retained a released payload");
+        } catch (IllegalStateException e) {
+            // success
+        }
+        try {
+            payload.release();
+            fail("Released a payload twice");
+        } catch (IllegalStateException e) {
+            // success
+        }
+        assertEquals(0, payload.getReferenceCount());
+    }
+
+    public void testRetainedBytesAreBounded() {
+        PooledPayload[] payloads = new PooledPayload[8];
+        for (int i = 0; i < payloads.length; i++)
+            payloads[i] = mPool.acquire(64 * 1024);
+        for (PooledPayload payload : payloads)
+            payload.release();
+
+        assertEquals(256 * 1024, mPool.getRetainedBytes());
+    }
+
+    private void leak(int size) {
+        mPool.acquire(size); // and never released
+    }
+
+    public void testLeakDetection() throws Exception {
+        mPool.setLeakDetection(PayloadPool.LeakDetection.ALL);
+        final AtomicInteger leaks = new AtomicInteger();
+        final Throwable[] acquiredAt = new Throwable[1];
+        mPool.setLeakListener(new PayloadPool.LeakListener() {
+            @Override
+            public void onLeak(PayloadPool pool, Throwable at) {
+                leaks.incrementAndGet();
+                acquiredAt[0] = at;
+            }
+        });
+
+        leak(2048);
+        for (int i = 0; i < 50 && leaks.get() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+            mPool.acquire(1).release(); // leaks are found while acquiring
+        }
+
+        assertEquals(1, leaks.get());
+        assertEquals(1, mPool.getLeakCount());
+        assertNotNull(acquiredAt[0]);
+        // and the leaked buffer went back in the pool
+        assertEquals(2048, mPool.acquire(2048).array().length);
+        assertTrue(mPool.getHitCount() > 0);
+    }
+
+    public void testReleasedPayloadsAreNotLeaks() throws Exception {
+        mPool.setLeakDetection(PayloadPool.LeakDetection.ALL);
+        for (int i = 0; i < 100; i++)
+            mPool.acquire(100).release();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(20);
+            mPool.acquire(1).release();
+        }
+
+        assertEquals(0, mPool.getLeakCount());
+    }
+}
@@ -0,0 +1,111 @@
+package com.docusign.forklift;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ThreadHostTest extends TestCase {
+
+    private ThreadHost mHost;
+    private Thread.UncaughtExceptionHandler mDefaultHandler;
+    private final List<Throwable> mReported = new ArrayList<Throwable>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDefaultHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                synchronized (mReported) {
+                    mReported.add(e);
+                }
+            }
+        });
+        mHost = new ThreadHost("ThreadHostTest host");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mHost.quit();
+        Thread.setDefaultUncaughtExceptionHandler(mDefaultHandler);
+        super.tearDown();
+    }
+
+    private void awaitHost() throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(1);
+        mHost.post(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertTrue("Host stopped running what it's posted", ran.await(5, TimeUnit.SECONDS));
+    }
+
+    public void testThrowingRunnableIsReportedAndHostCarriesOn() throws Exception {
+        final RuntimeException error = new IllegalStateException("broken listener");
+        mHost.post(new Runnable() {
+            @Override
+            public void run() {
+                throw error;
+            }
+        });
+
+        awaitHost();
+        synchronized (mReported) {
+            assertEquals(1, mReported.size());
+            assertSame(error, mReported.get(0));
+        }
+    }
+
+    public void testDeadHostDropsPosts() throws Exception {
+        final AssertionError fatal = new AssertionError("fatal");
+        mHost.post(new Runnable() {
+            @Override
+            public void run() {
+                throw fatal;
+            }
+        });
+
+        // reported once the thread is on its way out, and no longer taking posts
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            synchronized (mReported) {
+                if (mReported.contains(fatal))
+                    break;
+            }
+            assertTrue("Host thread didn't die", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        mHost.post(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertFalse("Dead host ran a post", ran.await(100, TimeUnit.MILLISECONDS));
+    }
+
+    public void testQuitHostDropsPosts() throws Exception {
+        awaitHost();
+        mHost.quit();
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        mHost.post(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertFalse("Quit host ran a post", ran.await(100, TimeUnit.MILLISECONDS));
+        synchronized (mReported) {
+            assertTrue(mReported.isEmpty());
+        }
+    }
+}
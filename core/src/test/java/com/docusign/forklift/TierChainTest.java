@@ -0,0 +1,172 @@
+package com.docusign.forklift;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TierChainTest extends TestCase {
+
+    private static class StubTier extends TierChain.Tier<Object> {
+        private final Object mData; // null for a miss
+        private final long mDelayMillis;
+        private final ChainLoaderException mError;
+        final List<Object> mStored = new ArrayList<Object>();
+        int mLoads;
+        volatile boolean mInterrupted;
+
+        private StubTier(Object data, long delayMillis, ChainLoaderException error) {
+            mData = data;
+            mDelayMillis = delayMillis;
+            mError = error;
+        }
+
+        static StubTier hit(Object data) {
+            return new StubTier(data, 0, null);
+        }
+
+        static StubTier miss() {
+            return new StubTier(null, 0, null);
+        }
+
+        @Override
+        public Object load() throws ChainLoaderException {
+            mLoads++;
+            if (mDelayMillis > 0) {
+                try {
+                    Thread.sleep(mDelayMillis);
+                } catch (InterruptedException e) {
+                    mInterrupted = true;
+                    throw new ChainLoaderException(e);
+                }
+            }
+
+            if (mError != null)
+                throw mError;
+            if (mData == null)
+                throw NO_RESULT;
+            return mData;
+        }
+
+        @Override
+        public void store(Object data) {
+            mStored.add(data);
+        }
+    }
+
+    public void testShortCircuitsOnFirstHit() throws Exception {
+        StubTier memory = StubTier.miss();
+        StubTier disk = StubTier.hit("disk");
+        StubTier network = StubTier.hit("network");
+        TierChain<Object> chain = TierChain.<Object>builder().add(memory).add(disk).add(network).build();
+
+        assertEquals("disk", chain.load());
+        assertEquals(1, memory.mLoads);
+        assertEquals(1, disk.mLoads);
+        assertEquals(0, network.mLoads);
+    }
+
+    public void testWritesBackToEarlierTiers() throws Exception {
+        StubTier memory = StubTier.miss();
+        StubTier disk = StubTier.miss();
+        StubTier network = StubTier.hit("network");
+        TierChain<Object> chain = TierChain.<Object>builder().add(memory).add(disk).add(network).build();
+
+        assertEquals("network", chain.load());
+        assertEquals(1, memory.mStored.size());
+        assertEquals("network", memory.mStored.get(0));
+        assertEquals(1, disk.mStored.size());
+        assertTrue(network.mStored.isEmpty());
+    }
+
+    public void testTimeoutFallsThrough() throws Exception {
+        StubTier slow = new StubTier("slow", 5000, null);
+        StubTier network = StubTier.hit("network");
+        TierChain<Object> chain = TierChain.<Object>builder().add(slow, 50, TimeUnit.MILLISECONDS).add(network).build();
+
+        long start = System.nanoTime();
+        assertEquals("network", chain.load());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        assertTrue(slow.mInterrupted);
+        assertFalse("the timeout's interrupt leaked out of the chain", Thread.currentThread().isInterrupted());
+        assertEquals(1, slow.mStored.size()); // and it gets the data it was too slow to find
+    }
+
+    public void testForeignInterruptSurvivesTimeout() throws Exception {
+        // ignores interrupts, so that it's still late when the alarm goes off
+        TierChain.Tier<Object> stubborn = new TierChain.Tier<Object>() {
+            @Override
+            public Object load() {
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                while (System.nanoTime() < end) { }
+                return "stubborn";
+            }
+        };
+        TierChain<Object> chain = TierChain.<Object>builder().add(stubborn, 20, TimeUnit.MILLISECONDS).build();
+
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals("stubborn", chain.load());
+            assertTrue("the chain swallowed an interrupt that wasn't its own", Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    public void testTierWithinItsTimeIsUndisturbed() throws Exception {
+        StubTier disk = new StubTier("disk", 20, null);
+        TierChain<Object> chain = TierChain.<Object>builder().add(disk, 5, TimeUnit.SECONDS).add(StubTier.hit("network")).build();
+
+        assertEquals("disk", chain.load());
+        assertFalse(disk.mInterrupted);
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    public void testFinishedTierLeavesNoAlarmQueued() throws Exception {
+        TierChain<Object> chain = TierChain.<Object>builder().add(StubTier.hit("network"), 1, TimeUnit.MINUTES).build();
+
+        assertEquals("network", chain.load());
+        assertTrue(TierChain.Watchdog.sInstance.getQueue().isEmpty());
+    }
+
+    public void testFailuresFallThroughAndLastOneWins() throws Exception {
+        ChainLoaderException diskError = new ChainLoaderException("disk");
+        ChainLoaderException networkError = new ChainLoaderException("network");
+        TierChain<Object> chain = TierChain.<Object>builder()
+                .add(new StubTier(null, 0, diskError))
+                .add(StubTier.miss())
+                .add(new StubTier(null, 0, networkError))
+                .build();
+
+        try {
+            chain.load();
+            fail("A chain without a hit returned a result");
+        } catch (ChainLoaderException e) {
+            assertSame(networkError, e);
+        }
+    }
+
+    public void testTimedOutFailureIsReported() throws Exception {
+        TierChain<Object> chain = TierChain.<Object>builder().add(new StubTier("slow", 5000, null), 20, TimeUnit.MILLISECONDS).build();
+
+        try {
+            chain.load();
+            fail("A timed out tier returned a result");
+        } catch (TierTimeoutException e) {
+            // success
+        }
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    public void testAllMissingFails() throws Exception {
+        TierChain<Object> chain = TierChain.<Object>builder().add(StubTier.miss()).add(StubTier.miss()).build();
+
+        try {
+            chain.load();
+            fail("A chain without a hit returned a result");
+        } catch (ChainLoaderException e) {
+            assertFalse(e instanceof NoResultException);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.docusign.forklift;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class VirtualThreadsTest extends TestCase {
+
+    @Override
+    protected void tearDown() throws Exception {
+        VirtualThreads.setEnabled(false);
+        super.tearDown();
+    }
+
+    private static boolean isVirtual(Thread thread) throws Exception {
+        return (Boolean)Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    public void testUnsupportedJvm() {
+        if (VirtualThreads.isSupported())
+            return;
+
+        assertFalse(VirtualThreads.isEnabled());
+        try {
+            VirtualThreads.setEnabled(true);
+            fail("Enabled virtual threads on a JVM without them");
+        } catch (UnsupportedOperationException e) {
+            // success
+        }
+        assertNull(VirtualThreads.enabledExecutor());
+    }
+
+    public void testLanesStaySerialOnVirtualThreads() throws Exception {
+        if (!VirtualThreads.isSupported())
+            return;
+
+        VirtualThreads.setEnabled(true);
+        FallbackDeliveryExecutor.SerialExecutor lane = new FallbackDeliveryExecutor.SerialExecutor();
+        final List<Integer> order = new ArrayList<Integer>();
+        final CountDownLatch done = new CountDownLatch(1000);
+        final boolean[] virtual = new boolean[1];
+        for (int i = 0; i < 1000; i++) {
+            final int job = i;
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(job); // unsynchronized on purpose: the lane runs one job at a time
+                    try {
+                        virtual[0] = isVirtual(Thread.currentThread());
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(virtual[0]);
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i, (int)order.get(i));
+    }
+}
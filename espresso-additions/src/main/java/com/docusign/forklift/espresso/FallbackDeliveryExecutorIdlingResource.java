@@ -2,7 +2,6 @@ package com.docusign.forklift.espresso;
 
 import android.support.test.espresso.IdlingResource;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -13,10 +12,10 @@ import java.util.concurrent.TimeUnit;
  */
 public class FallbackDeliveryExecutorIdlingResource implements IdlingResource {
     private ThreadPoolExecutor mExecutor;
+    private volatile boolean mIdle;
     private ResourceCallback mCallback;
     private final Class<?> mFDEClazz;
     private final Field mInstanceField;
-    private final Constructor<?> mCtor;
     private final Object mLock;
 
     public FallbackDeliveryExecutorIdlingResource() {
@@ -24,9 +23,6 @@ public class FallbackDeliveryExecutorIdlingResource implements IdlingResource {
             mFDEClazz = Class.forName("com.docusign.forklift.FallbackDeliveryExecutor");
             mInstanceField = mFDEClazz.getDeclaredField("sInstance");
             mInstanceField.setAccessible(true);
-            mCtor = mFDEClazz.getDeclaredConstructor(new Class[0]);
-            mCtor.setAccessible(true);
-            mExecutor = (ThreadPoolExecutor)mInstanceField.get(null);
             mLock = new Object();
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -40,7 +36,7 @@ public class FallbackDeliveryExecutorIdlingResource implements IdlingResource {
 
     @Override
     public boolean isIdleNow() {
-        return mExecutor == null;
+        return mIdle;
     }
 
     @Override
@@ -52,7 +48,15 @@ public class FallbackDeliveryExecutorIdlingResource implements IdlingResource {
 
     // possible race condition here if we call this more than once.. might be resolved with WeakReference or smarter checking.. just don't call it more than once
     public FallbackDeliveryExecutorIdlingResource initiateIdling() {
+        // the pool is only created once something is delivered through it, and is created afresh on the next delivery once shut down
+        try {
+            mExecutor = (ThreadPoolExecutor)mInstanceField.get(null);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+
         if (mExecutor == null) {
+            mIdle = true;
             if (mCallback != null)
                 mCallback.onTransitionToIdle();
         } else {
@@ -61,7 +65,7 @@ public class FallbackDeliveryExecutorIdlingResource implements IdlingResource {
                 public void run() {
                     try {
                         mExecutor.awaitTermination(60, TimeUnit.SECONDS);
-                        mInstanceField.set(null, mCtor.newInstance((Object[])null));
+                        mIdle = true;
                         synchronized (mLock) {
                             if (mCallback != null)
                                 mCallback.onTransitionToIdle();
@@ -0,0 +1,359 @@
+package com.docusign.forklift;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v4.content.Loader;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncChainLoaderTest extends AndroidTestCase {
+    private static final Object SELF_RESULT = new Object();
+    private static final Object CHAIN_RESULT = new Object();
+
+    private static class SleepyACL extends AsyncChainLoader<Object> {
+        private final long mSleep;
+        private final Object mResult; // NO_RESULT to fall through
+        private final boolean mSpeculative;
+        final AtomicInteger mFallbacks = new AtomicInteger(0);
+
+        private SleepyACL(Context context, Loader<Result<Object>> chain, long sleep, Object result, boolean speculative) {
+            super(context, chain);
+            mSleep = sleep;
+            mResult = result;
+            mSpeculative = speculative;
+        }
+
+        @Override
+        public Object doLoad() throws ChainLoaderException {
+            try {
+                Thread.sleep(mSleep);
+            } catch (InterruptedException e) {
+                throw new ChainLoaderException(e);
+            }
+
+            if (mResult instanceof ChainLoaderException)
+                throw (ChainLoaderException)mResult;
+            return mResult;
+        }
+
+        @Override
+        protected boolean isChainSpeculative() {
+            return mSpeculative;
+        }
+
+        @Override
+        protected Object onFallbackDelivered(Object data, Result.Type type) throws ChainLoaderException {
+            mFallbacks.incrementAndGet();
+            return data;
+        }
+    }
+
+    private static class ThreadRecordingACL extends AsyncChainLoader<Object> {
+        volatile String mLoadThread;
+        volatile String mDeliveryThread;
+
+        private ThreadRecordingACL(Context context, Loader<Result<Object>> chain, Executor loads, Executor deliveries) {
+            super(context, chain, loads, deliveries);
+        }
+
+        @Override
+        public Object doLoad() throws ChainLoaderException {
+            mLoadThread = Thread.currentThread().getName();
+            throw NO_RESULT;
+        }
+
+        @Override
+        protected Object onFallbackDelivered(Object data, Result.Type type) throws ChainLoaderException {
+            mDeliveryThread = Thread.currentThread().getName();
+            return data;
+        }
+    }
+
+    private static ExecutorService namedThread(final String name) {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, name);
+            }
+        });
+    }
+
+    public void testSpeculativeChainOverlapsSelf() throws Exception {
+        SleepyACL chain = new SleepyACL(getContext(), null, 300, CHAIN_RESULT, false);
+        SleepyACL loader = new SleepyACL(getContext(), chain, 300, AsyncChainLoader.NO_RESULT, true);
+
+        long start = System.nanoTime();
+        assertSame(CHAIN_RESULT, Forklift.getAsync(loader).get(5, TimeUnit.SECONDS).get());
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Chain did not run alongside doLoad(), took " + elapsed + "ms", elapsed < 550);
+    }
+
+    public void testSpeculativeChainHeldBackUntilSelfDelivers() throws Exception {
+        SleepyACL chain = new SleepyACL(getContext(), null, 0, CHAIN_RESULT, false);
+        final SleepyACL loader = new SleepyACL(getContext(), chain, 200, SELF_RESULT, true);
+        final List<Object> delivered = new ArrayList<Object>();
+        final CountDownLatch done = new CountDownLatch(2);
+        final Handler main = new Handler(Looper.getMainLooper());
+
+        main.post(new Runnable() {
+            @Override
+            public void run() {
+                loader.registerListener(0, new Loader.OnLoadCompleteListener<Result<Object>>() {
+                    @Override
+                    public void onLoadComplete(Loader<Result<Object>> l, Result<Object> data) {
+                        try {
+                            delivered.add(data.get());
+                        } catch (ChainLoaderException e) {
+                            delivered.add(e);
+                        }
+                        done.countDown();
+                    }
+                });
+                loader.startLoading();
+            }
+        });
+
+        assertTrue("Loader did not deliver both results.", done.await(5, TimeUnit.SECONDS));
+        main.post(new Runnable() {
+            @Override
+            public void run() {
+                loader.reset();
+            }
+        });
+
+        assertEquals(2, delivered.size());
+        assertSame("Chain result overtook doLoad()'s.", SELF_RESULT, delivered.get(0));
+        assertSame(CHAIN_RESULT, delivered.get(1));
+    }
+
+    public void testSpeculativeChainDroppedOnFailure() throws Exception {
+        SleepyACL chain = new SleepyACL(getContext(), null, 0, CHAIN_RESULT, false);
+        SleepyACL loader = new SleepyACL(getContext(), chain, 200, new ChainLoaderException("self failed"), true);
+
+        try {
+            Forklift.getAsync(loader).get(5, TimeUnit.SECONDS).get();
+            fail("Loader should have delivered its own failure, not the chain's result.");
+        } catch (ChainLoaderException expected) {
+            assertEquals("self failed", expected.getMessage());
+        }
+        assertEquals("Chain result was processed even though doLoad() failed.", 0, loader.mFallbacks.get());
+    }
+
+    public void testConflatedPartials() throws Exception {
+        final int PARTIALS = 50;
+        final List<Result<Object>> emitted = new ArrayList<Result<Object>>();
+        Loader<Result<Object>> burst = new Loader<Result<Object>>(getContext()) {
+            @Override
+            protected void onStartLoading() {
+                for (int i = 0; i < PARTIALS; i++) {
+                    Result<Object> partial = Result.partial((Object)i);
+                    emitted.add(partial);
+                    deliverResult(partial);
+                }
+                deliverResult(Result.<Object>success(PARTIALS));
+            }
+        };
+
+        final AtomicInteger dropped = new AtomicInteger(0);
+        final SleepyACL loader = new SleepyACL(getContext(), burst, 0, AsyncChainLoader.NO_RESULT, false) {
+            @Override
+            protected Object onFallbackDelivered(Object data, Result.Type type) throws ChainLoaderException {
+                SystemClock.sleep(20);
+                return super.onFallbackDelivered(data, type);
+            }
+
+            @Override
+            protected boolean isConflatingPartials() {
+                return true;
+            }
+
+            @Override
+            protected void onReleaseData(Result<Object> data) {
+                if (emitted.contains(data)) // rather than one of our own results
+                    dropped.incrementAndGet();
+            }
+        };
+
+        assertEquals(PARTIALS, Forklift.getAsync(loader).get(5, TimeUnit.SECONDS).get());
+        int processed = loader.mFallbacks.get();
+        assertTrue("Partial results were not conflated.", processed < PARTIALS / 2);
+        assertEquals("Every partial result should have been either processed or released.", PARTIALS + 1, processed + dropped.get());
+    }
+
+    public void testReloadWaitsForRunningDeliveryOnly() throws Exception {
+        Loader<Result<Object>> burst = new Loader<Result<Object>>(getContext()) {
+            @Override
+            protected void onStartLoading() {
+                for (int i = 0; i < 3; i++)
+                    deliverResult(Result.partial((Object)i));
+            }
+        };
+
+        final CountDownLatch delivering = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger(0);
+        final long[] awaited = { -1 };
+        final SleepyACL loader = new SleepyACL(getContext(), burst, 0, null, false) {
+            @Override
+            public Object doLoad() throws ChainLoaderException {
+                if (loads.getAndIncrement() == 0)
+                    throw NO_RESULT;
+                return SELF_RESULT;
+            }
+
+            @Override
+            protected Object onFallbackDelivered(Object data, Result.Type type) throws ChainLoaderException {
+                delivering.countDown();
+                SystemClock.sleep(300);
+                return super.onFallbackDelivered(data, type);
+            }
+
+            @Override
+            protected void onDeliveriesAwaited(long waitedMillis) {
+                awaited[0] = waitedMillis;
+            }
+        };
+
+        final CountDownLatch reloaded = new CountDownLatch(1);
+        final Handler main = new Handler(Looper.getMainLooper());
+        main.post(new Runnable() {
+            @Override
+            public void run() {
+                loader.registerListener(0, new Loader.OnLoadCompleteListener<Result<Object>>() {
+                    @Override
+                    public void onLoadComplete(Loader<Result<Object>> l, Result<Object> data) {
+                        if (data.getType() == Result.Type.COMPLETE)
+                            reloaded.countDown();
+                    }
+                });
+                loader.startLoading();
+            }
+        });
+
+        assertTrue(delivering.await(5, TimeUnit.SECONDS));
+        main.post(new Runnable() {
+            @Override
+            public void run() {
+                loader.onContentChanged();
+            }
+        });
+
+        assertTrue("Reload never delivered.", reloaded.await(5, TimeUnit.SECONDS));
+        main.post(new Runnable() {
+            @Override
+            public void run() {
+                loader.reset();
+            }
+        });
+
+        assertEquals("Deliveries queued behind the reload were not cancelled.", 1, loader.mFallbacks.get());
+        assertTrue("Reload did not report waiting for the running delivery: " + awaited[0], awaited[0] >= 100 && awaited[0] < 600);
+    }
+
+    public void testSuppliedExecutors() throws Exception {
+        ExecutorService loads = namedThread("heavy loads");
+        ExecutorService deliveries = namedThread("heavy deliveries");
+        try {
+            SleepyACL chain = new SleepyACL(getContext(), null, 0, CHAIN_RESULT, false);
+            ThreadRecordingACL loader = new ThreadRecordingACL(getContext(), chain, loads, deliveries);
+
+            assertSame(CHAIN_RESULT, Forklift.getAsync(loader).get(5, TimeUnit.SECONDS).get());
+            assertEquals("heavy loads", loader.mLoadThread);
+            assertEquals("heavy deliveries", loader.mDeliveryThread);
+        } finally {
+            loads.shutdown();
+            deliveries.shutdown();
+        }
+    }
+
+    public void testRejectedDeliveryFailsInstead() throws Exception {
+        final PayloadPool pool = new PayloadPool(4096, 1024 * 1024);
+        final PooledPayload payload = pool.acquire(1024);
+        Loader<Result<Object>> chain = new Loader<Result<Object>>(getContext()) {
+            @Override
+            protected void onStartLoading() {
+                deliverResult(Result.<Object>success(payload));
+                payload.release(); // a plain Loader has to let go of its own reference
+            }
+        };
+        Executor refusing = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("shut down");
+            }
+        };
+        ThreadRecordingACL loader = new ThreadRecordingACL(getContext(), chain, null, refusing);
+
+        Result<Object> result = Forklift.getAsync(loader).get(5, TimeUnit.SECONDS);
+        // the chain lets go of its own reference on the main thread once it has delivered, which may be after we're woken
+        final CountDownLatch synced = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                synced.countDown();
+            }
+        });
+        assertTrue(synced.await(5, TimeUnit.SECONDS));
+        assertEquals(Result.Type.FAILURE, result.getType());
+        assertNull("The refused result was processed anyway.", loader.mDeliveryThread);
+        assertEquals("The refused result was not released.", 0, payload.getReferenceCount());
+        assertEquals(0, loader.getPendingDeliveries());
+    }
+
+    public void testPooledPayloadsAreReleased() throws Exception {
+        final int PARTIALS = 20;
+        final PayloadPool pool = new PayloadPool(4096, 1024 * 1024);
+        pool.setLeakDetection(PayloadPool.LeakDetection.ALL);
+        final List<PooledPayload> emitted = new ArrayList<PooledPayload>();
+        Loader<Result<Object>> progressive = new Loader<Result<Object>>(getContext()) {
+            @Override
+            protected void onStartLoading() {
+                for (int i = 0; i <= PARTIALS; i++) {
+                    PooledPayload payload = pool.acquire(1024);
+                    emitted.add(payload);
+                    deliverResult(i < PARTIALS ? Result.<Object>partial(payload) : Result.<Object>success(payload));
+                    payload.release(); // a plain Loader has to let go of its own reference
+                }
+            }
+        };
+
+        final List<Object> delivered = new ArrayList<Object>();
+        SleepyACL loader = new SleepyACL(getContext(), progressive, 0, AsyncChainLoader.NO_RESULT, false) {
+            @Override
+            protected Object onFallbackDelivered(Object data, Result.Type type) throws ChainLoaderException {
+                PooledPayload payload = (PooledPayload)data;
+                assertTrue("A payload was released before it was delivered.", payload.getReferenceCount() > 0);
+                delivered.add(data);
+                return data;
+            }
+        };
+
+        Forklift.getAsync(loader).get(5, TimeUnit.SECONDS);
+        // getAsync() resets the loader right after the final result, on the main thread, which releases that too
+        final CountDownLatch synced = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                synced.countDown();
+            }
+        });
+        assertTrue(synced.await(5, TimeUnit.SECONDS));
+        assertEquals(PARTIALS + 1, delivered.size());
+        for (int i = 0; i <= PARTIALS; i++)
+            assertEquals("Result " + i + " was not released.", 0, emitted.get(i).getReferenceCount());
+        assertEquals(0, pool.getLeakCount());
+        // and their buffers are back in the pool, ready for the next load
+        assertEquals((PARTIALS + 1) * 1024, pool.getRetainedBytes());
+    }
+}
@@ -0,0 +1,176 @@
+package com.docusign.forklift;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DiskCacheLoaderTest extends AndroidTestCase {
+    private static final DiskCacheLoader.Codec<String> STRING_CODEC = new DiskCacheLoader.Codec<String>() {
+        @Override
+        public byte[] encode(String value) throws IOException {
+            return value.getBytes("UTF-8");
+        }
+
+        @Override
+        public String decode(ByteBuffer buffer) throws IOException {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new String(bytes, "UTF-8");
+        }
+    };
+
+    private static class NetworkACL extends AsyncChainLoader<String> {
+        private final AtomicInteger mLoads;
+
+        private NetworkACL(Context context, AtomicInteger loads) {
+            super(context, null);
+            mLoads = loads;
+        }
+
+        @Override
+        public String doLoad() throws ChainLoaderException {
+            return "fresh #" + mLoads.incrementAndGet();
+        }
+    }
+
+    private File mFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFile = new File(getContext().getCacheDir(), "DiskCacheLoaderTest-" + System.nanoTime());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFile.delete();
+        new File(mFile.getPath() + ".compact").delete();
+        super.tearDown();
+    }
+
+    private static String read(MappedDiskStore store, String key) throws IOException {
+        ByteBuffer value = store.get(key);
+        return value == null ? null : STRING_CODEC.decode(value);
+    }
+
+    public void testPersistsAcrossReopen() throws Exception {
+        MappedDiskStore store = new MappedDiskStore(mFile, 1024 * 1024);
+        store.put("one", STRING_CODEC.encode("first"));
+        store.put("two", STRING_CODEC.encode("second"));
+        store.put("one", STRING_CODEC.encode("replaced"));
+        store.remove("two");
+        store.close();
+
+        store = new MappedDiskStore(mFile, 1024 * 1024);
+        assertEquals("replaced", read(store, "one"));
+        assertNull(read(store, "two"));
+        assertEquals(1, store.count());
+        store.close();
+    }
+
+    public void testTornWriteIsDropped() throws Exception {
+        MappedDiskStore store = new MappedDiskStore(mFile, 1024 * 1024);
+        store.put("good", STRING_CODEC.encode("intact"));
+        store.put("torn", STRING_CODEC.encode("this one gets mangled"));
+        store.close();
+
+        // file header, then the first record (header, "good", "intact"), then the second record's header and key
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.seek(8 + (16 + 4 + 6) + (16 + 4) + 10);
+        file.write('X');
+        file.close();
+
+        store = new MappedDiskStore(mFile, 1024 * 1024);
+        assertEquals("intact", read(store, "good"));
+        assertNull("Corrupt record was not dropped.", read(store, "torn"));
+        store.close();
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        MappedDiskStore store = new MappedDiskStore(mFile, 3 * (16 + 3 + 1000));
+        byte[] value = new byte[1000];
+        store.put("one", value);
+        store.put("two", value);
+        store.put("six", value);
+        assertNotNull(store.get("one")); // "two" is now the eldest
+        store.put("ten", value);
+
+        assertNull(store.get("two"));
+        assertNotNull(store.get("one"));
+        assertNotNull(store.get("six"));
+        assertNotNull(store.get("ten"));
+        assertTrue(store.size() <= 3 * (16 + 3 + 1000));
+        store.close();
+    }
+
+    public void testEvictionSurvivesReopen() throws Exception {
+        long maxSize = 3 * (16 + 3 + 1000);
+        MappedDiskStore store = new MappedDiskStore(mFile, maxSize);
+        byte[] value = new byte[1000];
+        store.put("one", value);
+        store.put("two", value);
+        store.put("six", value);
+        assertNotNull(store.get("one")); // "two" is now the eldest, though "one" was written first
+        store.put("ten", value);
+        store.close();
+
+        store = new MappedDiskStore(mFile, maxSize);
+        assertNull(store.get("two"));
+        assertNotNull(store.get("one"));
+        assertNotNull(store.get("six"));
+        assertNotNull(store.get("ten"));
+        assertEquals(3, store.count());
+        assertTrue(store.size() <= maxSize);
+        store.close();
+    }
+
+    public void testCompactionKeepsLiveValues() throws Exception {
+        MappedDiskStore store = new MappedDiskStore(mFile, 64 * 1024);
+        ByteBuffer early = null;
+        for (int i = 0; i < 20000; i++) {
+            store.put("key" + (i % 10), STRING_CODEC.encode("value " + i));
+            if (i == 5)
+                early = store.get("key5");
+        }
+
+        assertTrue("File was never compacted.", mFile.length() <= 4 * 64 * 1024);
+        for (int i = 0; i < 10; i++)
+            assertEquals("value " + (19990 + i), read(store, "key" + i));
+        assertEquals("Buffer handed out before compaction was invalidated.", "value 5", STRING_CODEC.decode(early));
+        store.close();
+
+        store = new MappedDiskStore(mFile, 64 * 1024);
+        assertEquals("value 19999", read(store, "key9"));
+        store.close();
+    }
+
+    public void testWriteThroughAndHit() throws Exception {
+        MappedDiskStore store = new MappedDiskStore(mFile, 1024 * 1024);
+        AtomicInteger networkLoads = new AtomicInteger(0);
+
+        assertEquals("fresh #1", Forklift.getSync(new DiskCacheLoader<String>(getContext(), new NetworkACL(getContext(), networkLoads), store, "doc",
+                STRING_CODEC)).get());
+        assertEquals("fresh #1", read(store, "doc"));
+
+        assertEquals("fresh #1", Forklift.getSync(new DiskCacheLoader<String>(getContext(), new NetworkACL(getContext(), networkLoads), store, "doc",
+                STRING_CODEC)).get());
+        assertEquals("Cached data was loaded from the network again.", 1, networkLoads.get());
+        store.close();
+    }
+
+    public void testUnreadableDataFallsBack() throws Exception {
+        MappedDiskStore store = new MappedDiskStore(mFile, 1024 * 1024);
+        store.put("doc", new byte[] { 1, 2, 3 });
+        NetworkACL network = new NetworkACL(getContext(), new AtomicInteger(0));
+        DiskCacheLoader.Codec<String> codec = DiskCacheLoader.serializableCodec();
+
+        assertEquals("fresh #1", Forklift.getSync(new DiskCacheLoader<String>(getContext(), network, store, "doc", codec)).get());
+        assertEquals("Unreadable data was not replaced.", "fresh #1", codec.decode(store.get("doc")));
+        store.close();
+    }
+}
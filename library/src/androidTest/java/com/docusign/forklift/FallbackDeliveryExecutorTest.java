@@ -67,7 +67,7 @@ public class FallbackDeliveryExecutorTest extends AndroidTestCase {
                 });
 
                 futures.add(task);
-                FallbackDeliveryExecutor.get(acl).execute(task);
+                acl.getFallbackDeliveryLane().execute(task);
             }
         }
 
@@ -76,6 +76,65 @@ public class FallbackDeliveryExecutorTest extends AndroidTestCase {
         }
     }
 
+    // test ordering under contention - many threads hammering a few ACLs at once must never overlap or reorder jobs
+    // that a single thread submitted to a single ACL
+    public void testContendedOrdering() throws Exception {
+        final int ACL_COUNT = 32;
+        final int SUBMITTER_COUNT = 8;
+        final int JOBS_PER_SUBMITTER = 2048; // 16k submissions in total
+        final long seed = new Random().nextLong();
+
+        final StubACL[] acls = new StubACL[ACL_COUNT];
+        final AtomicInteger[] running = new AtomicInteger[ACL_COUNT];
+        final int[][] lastSeen = new int[ACL_COUNT][SUBMITTER_COUNT];
+        for (int i = 0; i < ACL_COUNT; i++) {
+            acls[i] = new StubACL(getContext());
+            running[i] = new AtomicInteger(0);
+            for (int j = 0; j < SUBMITTER_COUNT; j++)
+                lastSeen[i][j] = -1;
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(SUBMITTER_COUNT * JOBS_PER_SUBMITTER);
+        final AtomicInteger failures = new AtomicInteger(0);
+
+        for (int s = 0; s < SUBMITTER_COUNT; s++) {
+            final int submitterId = s;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random r = new Random(seed + submitterId);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < JOBS_PER_SUBMITTER; j++) {
+                        final int aclId = r.nextInt(ACL_COUNT);
+                        final int jobId = j;
+                        acls[aclId].getFallbackDeliveryLane().execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (running[aclId].getAndIncrement() != 0)
+                                    failures.incrementAndGet();
+                                // lastSeen[aclId] is only ever touched by jobs for this ACL, which we just checked are serial
+                                if (lastSeen[aclId][submitterId] >= jobId)
+                                    failures.incrementAndGet();
+                                lastSeen[aclId][submitterId] = jobId;
+                                running[aclId].decrementAndGet();
+                                done.countDown();
+                            }
+                        });
+                    }
+                }
+            }).start();
+        }
+
+        start.countDown();
+        assertTrue("Jobs did not all finish. Seed value " + seed + " to repro.", done.await(60, TimeUnit.SECONDS));
+        assertEquals("Jobs overlapped or ran out of order. Seed value " + seed + " to repro.", 0, failures.get());
+    }
+
     // test that we're not simply running them serially
     public void testRunningParallel() throws Exception {
         final int THREAD_COUNT = 2; // at a VERY minimum, there will always be two threads in the pool
@@ -84,7 +143,7 @@ public class FallbackDeliveryExecutorTest extends AndroidTestCase {
 
         final CountDownLatch latch = new CountDownLatch(THREAD_COUNT);
         for (int i = 0; i < THREAD_COUNT; i++) {
-            FallbackDeliveryExecutor.get(new StubACL(getContext())).execute(new Runnable() {
+            new StubACL(getContext()).getFallbackDeliveryLane().execute(new Runnable() {
                 @Override
                 public void run() {
                     try {
@@ -109,7 +168,7 @@ public class FallbackDeliveryExecutorTest extends AndroidTestCase {
                 return Thread.currentThread() == mainThread;
             }
         });
-        FallbackDeliveryExecutor.get(new StubACL(getContext())).execute(testOnMainThread);
+        new StubACL(getContext()).getFallbackDeliveryLane().execute(testOnMainThread);
         assertFalse("Task given to FallbackDeliveryExecutor was executed on main thread.", testOnMainThread.get(1, TimeUnit.SECONDS));
     }
 }
@@ -0,0 +1,111 @@
+package com.docusign.forklift;
+
+import android.content.Context;
+import android.support.v4.content.Loader;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ForkliftMetricsTest extends AndroidTestCase {
+    private static final Object RESULT = new Object();
+
+    private static class TimedACL extends AsyncChainLoader<Object> {
+        private final long mSleep;
+        private final Object mResult; // NO_RESULT to fall through
+        private final Object mKey = new Object(); // unique, so the shared ResultCache never short-circuits the load
+
+        private TimedACL(Context context, Loader<Result<Object>> chain, long sleep, Object result) {
+            super(context, chain);
+            mSleep = sleep;
+            mResult = result;
+        }
+
+        @Override
+        public Object doLoad() throws ChainLoaderException {
+            try {
+                Thread.sleep(mSleep);
+            } catch (InterruptedException e) {
+                throw new ChainLoaderException(e);
+            }
+
+            if (mResult instanceof ChainLoaderException)
+                throw (ChainLoaderException)mResult;
+            return mResult;
+        }
+
+        @Override
+        protected Object getCacheKey() {
+            return mKey;
+        }
+    }
+
+    private static class ChainACL extends TimedACL {
+        private ChainACL(Context context) {
+            super(context, null, 50, RESULT);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ForkliftMetrics.setListener(null);
+        super.tearDown();
+    }
+
+    public void testNothingReportedWithoutListener() throws Exception {
+        assertNull(ForkliftMetrics.getListener());
+        assertEquals(0, ForkliftMetrics.start());
+        assertSame(RESULT, Forklift.getSync(new TimedACL(getContext(), null, 0, RESULT)).get());
+    }
+
+    public void testStagesAreTimedPerLoaderClass() throws Exception {
+        final HistogramMetrics metrics = new HistogramMetrics();
+        final List<Object> keys = new ArrayList<Object>();
+        ForkliftMetrics.setListener(new ForkliftMetrics.Listener() {
+            @Override
+            public void onTiming(ForkliftMetrics.Stage stage, Class<?> loaderClass, Object key, long durationNanos, Result.Type type) {
+                synchronized (keys) {
+                    keys.add(key);
+                }
+                metrics.onTiming(stage, loaderClass, key, durationNanos, type);
+            }
+        });
+
+        TimedACL loader = new TimedACL(getContext(), new ChainACL(getContext()), 0, AsyncChainLoader.NO_RESULT);
+        assertSame(RESULT, Forklift.getSync(loader).get());
+
+        LatencyHistogram chainLoad = metrics.getHistogram(ChainACL.class, ForkliftMetrics.Stage.LOAD);
+        assertNotNull(chainLoad);
+        assertEquals(1, chainLoad.getCount());
+        assertTrue(chainLoad.getMax() >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertEquals(1, metrics.getHistogram(TimedACL.class, ForkliftMetrics.Stage.LOAD).getCount());
+        LatencyHistogram getSync = metrics.getHistogram(TimedACL.class, ForkliftMetrics.Stage.GET_SYNC);
+        assertEquals(1, getSync.getCount());
+        assertTrue(getSync.getMax() >= chainLoad.getMax());
+
+        synchronized (keys) {
+            assertTrue(keys.contains(loader.getCacheKey()));
+        }
+        assertTrue(metrics.dump().contains(ForkliftMetrics.Stage.GET_SYNC.toString()));
+    }
+
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+
+        for (int i = 1; i <= 100; i++)
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getMax());
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(50), histogram.getPercentile(50));
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(99), histogram.getPercentile(99));
+        assertEquals(histogram.getMax(), histogram.getPercentile(100));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("Expected ~" + expected + " but was " + actual, actual >= expected && actual <= expected + expected / 8);
+    }
+}
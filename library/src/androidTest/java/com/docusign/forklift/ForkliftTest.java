@@ -1,11 +1,21 @@
 package com.docusign.forklift;
 
+import android.content.Context;
 import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.support.v4.content.AsyncTaskLoader;
 import android.support.v4.content.Loader;
 import android.test.AndroidTestCase;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Created by chris.sarbora on 4/30/14.
  */
@@ -123,6 +133,18 @@ public class ForkliftTest extends AndroidTestCase {
         fail("Loader failed but exception was not thrown upon get()");
     }
 
+    public void testCancelledAsyncChainLoader() throws Exception {
+        try {
+            Forklift.getSync(new AsyncChainLoader<Object>(getContext(), null) {
+                @Override
+                public Object doLoad() throws ChainLoaderException {
+                    throw new LoadCancelledException();
+                }
+            });
+            fail("Loader was cancelled, but LoadCancelledException was not thrown.");
+        } catch (LoadCancelledException expected) { }
+    }
+
     public void testChainedAsyncChainLoader() throws Exception {
         assertSame(EXPECTED_RESULT, Forklift.getSync(new AsyncChainLoader<Object>(getContext(), new AsyncChainLoader<Object>(getContext(), null) {
             @Override
@@ -228,4 +250,254 @@ public class ForkliftTest extends AndroidTestCase {
                     }).get());
         } catch (LoadCancelledException expected) { }
     }
-}
\ No newline at end of file
+
+    public void testTimedLoader() throws Exception {
+        assertSame(EXPECTED_RESULT, Forklift.getSync(new AsyncTaskLoader<Object>(getContext()) {
+            @Override
+            public Object loadInBackground() {
+                return EXPECTED_RESULT;
+            }
+        }, 1, TimeUnit.SECONDS));
+    }
+
+    public void testTimeoutStuckLoader() throws Exception {
+        final long TIMEOUT_MILLIS = 100;
+        Loader<Object> stuck = new Loader<Object>(getContext()) {
+            @Override
+            protected void onStartLoading() {
+                // never delivers
+            }
+        };
+
+        long start = SystemClock.elapsedRealtime();
+        try {
+            Forklift.getSync(stuck, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            fail("Loader never delivered, but getSync returned anyway.");
+        } catch (TimeoutException expected) { }
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        assertTrue("getSync took " + elapsed + "ms to time out.", elapsed < TIMEOUT_MILLIS * 10);
+        assertFalse("Loader was not reset after timing out.", stuck.isStarted());
+    }
+
+    public void testAsyncFuture() throws Exception {
+        ForkliftFuture<Result<Object>> future = Forklift.getAsync(new AsyncChainLoader<Object>(getContext(), null) {
+            @Override
+            public Object doLoad() throws ChainLoaderException {
+                return EXPECTED_RESULT;
+            }
+        });
+
+        ForkliftFuture<Object> unwrapped = future.then(new ForkliftFuture.Transform<Result<Object>, Object>() {
+            @Override
+            public Object apply(Result<Object> input) throws ChainLoaderException {
+                return input.get();
+            }
+        });
+
+        assertSame(EXPECTED_RESULT, unwrapped.get(1, TimeUnit.SECONDS));
+        assertTrue(future.isDone());
+    }
+
+    public void testAsyncFutureLoadsOnce() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        Result<Object> result = Forklift.getAsync(new AsyncChainLoader<Object>(getContext(), null) {
+            @Override
+            public Object doLoad() throws ChainLoaderException {
+                loads.incrementAndGet();
+                return EXPECTED_RESULT;
+            }
+        }).get(1, TimeUnit.SECONDS);
+
+        assertSame(EXPECTED_RESULT, result.get());
+        SystemClock.sleep(200); // long enough for a reload of the reset loader to have run
+        assertEquals("Loader was loaded again after getAsync reset it.", 1, loads.get());
+    }
+
+    public void testCancelAsyncFuture() throws Exception {
+        Loader<Object> stuck = new Loader<Object>(getContext()) {
+            @Override
+            protected void onStartLoading() {
+                // never delivers
+            }
+        };
+
+        ForkliftFuture<Object> future = Forklift.getAsync(stuck);
+        SystemClock.sleep(50);
+        assertTrue("Loader was never started.", stuck.isStarted());
+
+        assertTrue(future.cancel(false));
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Future was cancelled, but get() returned anyway.");
+        } catch (CancellationException expected) { }
+
+        for (int i = 0; i < 20 && stuck.isStarted(); i++)
+            SystemClock.sleep(50);
+        assertFalse("Loader was not reset after its future was cancelled.", stuck.isStarted());
+    }
+
+    public void testGetAllSync() throws Exception {
+        final int LOADER_COUNT = 8;
+        final int PARALLELISM = 4;
+        final long DELAY = 200;
+        final int FAILING_LOADER = 5;
+
+        ArrayList<AsyncChainLoader<Object>> loaders = new ArrayList<AsyncChainLoader<Object>>();
+        final Object[] expected = new Object[LOADER_COUNT];
+        for (int i = 0; i < LOADER_COUNT; i++) {
+            final int id = i;
+            expected[i] = new Object();
+            loaders.add(new AsyncChainLoader<Object>(getContext(), null) {
+                @Override
+                public Object doLoad() throws ChainLoaderException {
+                    SystemClock.sleep(DELAY);
+                    if (id == FAILING_LOADER)
+                        throw new ChainLoaderException();
+                    return expected[id];
+                }
+            });
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        List<Result<Object>> results = Forklift.getAllSync(loaders, PARALLELISM);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        assertEquals(LOADER_COUNT, results.size());
+        for (int i = 0; i < LOADER_COUNT; i++) {
+            if (i == FAILING_LOADER) {
+                assertEquals(Result.Type.FAILURE, results.get(i).getType());
+            } else {
+                assertSame("Result " + i + " out of order.", expected[i], results.get(i).get());
+            }
+        }
+        assertTrue("getAllSync took " + elapsed + "ms, that's barely parallel.", elapsed < DELAY * LOADER_COUNT / 2);
+    }
+
+    /**
+     * Pushes a number of partial results followed by a complete one, either straight from startLoading() or from another thread.
+     */
+    private static class ProgressiveLoader extends Loader<Result<Object>> {
+        private final int mPartials;
+        private final boolean mSynchronous;
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+        private ProgressiveLoader(Context context, int partials, boolean synchronous) {
+            super(context);
+            mPartials = partials;
+            mSynchronous = synchronous;
+        }
+
+        @Override
+        protected void onStartLoading() {
+            if (mSynchronous) {
+                for (int i = 0; i < mPartials; i++)
+                    deliverResult(Result.<Object>partial(i));
+                deliverResult(Result.<Object>success(mPartials));
+                return;
+            }
+
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i <= mPartials; i++) {
+                        final Result<Object> result = i < mPartials ? Result.<Object>partial(i) : Result.<Object>success(i);
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (isStarted())
+                                    deliverResult(result);
+                            }
+                        });
+                        SystemClock.sleep(5);
+                    }
+                }
+            }.start();
+        }
+    }
+
+    public void testStreamChainedPartials() throws Exception {
+        final List<Result.Type> seen = new ArrayList<Result.Type>();
+        ForkliftStream<Object> stream = Forklift.stream(new AsyncChainLoader<Object>(getContext(), new ProgressiveLoader(getContext(), 5, false)) {
+            @Override
+            public Object doLoad() throws ChainLoaderException {
+                throw NO_RESULT;
+            }
+
+            @Override
+            protected Object onFallbackDelivered(Object data, Result.Type type) throws ChainLoaderException {
+                seen.add(type);
+                return "processed " + data;
+            }
+        });
+
+        List<Result<Object>> results = new ArrayList<Result<Object>>();
+        Result<Object> result;
+        while ((result = stream.next()) != null)
+            results.add(result);
+
+        assertEquals(6, results.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Result.Type.PARTIAL, results.get(i).getType());
+            assertEquals("processed " + i, results.get(i).get());
+            assertEquals(Result.Type.PARTIAL, seen.get(i));
+        }
+        assertEquals(Result.Type.COMPLETE, results.get(5).getType());
+        assertEquals(Result.Type.COMPLETE, seen.get(5));
+        assertNull("Stream did not end after its complete result.", stream.next());
+    }
+
+    public void testStreamConflatesPartialsWhenFull() throws Exception {
+        ForkliftStream<Object> stream = Forklift.stream(new ProgressiveLoader(getContext(), 10, true), 2);
+
+        assertEquals(0, stream.next().get());
+        Result<Object> conflated = stream.next();
+        assertEquals(Result.Type.PARTIAL, conflated.getType());
+        assertEquals("Newest partial result should have replaced the ones that didn't fit.", 9, conflated.get());
+        Result<Object> last = stream.next();
+        assertEquals(Result.Type.COMPLETE, last.getType());
+        assertEquals(10, last.get());
+        assertNull(stream.next());
+    }
+
+    public void testCloseStream() throws Exception {
+        final Loader<Result<Object>> stuck = new Loader<Result<Object>>(getContext()) { };
+        final ForkliftStream<Object> stream = Forklift.stream(stuck);
+
+        new Thread() {
+            @Override
+            public void run() {
+                SystemClock.sleep(100);
+                stream.close();
+            }
+        }.start();
+
+        try {
+            stream.next();
+            fail("Closing the stream did not cancel the waiting consumer.");
+        } catch (LoadCancelledException expected) { }
+        assertNull(stream.next());
+        assertFalse("Loader was not reset after its stream was closed.", stuck.isStarted());
+    }
+
+    public void testSyncChainPassesPartialType() throws Exception {
+        final List<Result.Type> seen = new ArrayList<Result.Type>();
+        Result<Object> result = Forklift.getSync(new AsyncChainLoader<Object>(getContext(), new ProgressiveLoader(getContext(), 1, false)) {
+            @Override
+            public Object doLoad() throws ChainLoaderException {
+                throw NO_RESULT;
+            }
+
+            @Override
+            protected Object onFallbackDelivered(Object data, Result.Type type) throws ChainLoaderException {
+                seen.add(type);
+                return EXPECTED_RESULT;
+            }
+        });
+
+        assertEquals(Result.Type.PARTIAL, result.getType());
+        assertSame(EXPECTED_RESULT, result.get());
+        assertEquals(1, seen.size());
+        assertEquals(Result.Type.PARTIAL, seen.get(0));
+    }
+}
@@ -0,0 +1,141 @@
+package com.docusign.forklift;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LoadCoalescerTest extends AndroidTestCase {
+    private static class SlowACL extends AsyncChainLoader<Object> {
+        private final Object mKey;
+        private final AtomicInteger mLoads;
+        private final boolean mHasResult;
+
+        private SlowACL(Context context, SlowACL chain, Object key, AtomicInteger loads, boolean hasResult) {
+            super(context, chain);
+            mKey = key;
+            mLoads = loads;
+            mHasResult = hasResult;
+        }
+
+        @Override
+        public Object doLoad() throws ChainLoaderException {
+            mLoads.incrementAndGet();
+            if (!mHasResult)
+                throw NO_RESULT;
+
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new ChainLoaderException(e);
+            }
+            return new Object();
+        }
+
+        @Override
+        protected Object getCoalescingKey() {
+            return mKey;
+        }
+    }
+
+    public void testIdenticalLoadsRunOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger(0);
+        ForkliftFuture<Result<Object>> first = Forklift.getAsync(new SlowACL(getContext(), null, "self", loads, true));
+        ForkliftFuture<Result<Object>> second = Forklift.getAsync(new SlowACL(getContext(), null, "self", loads, true));
+
+        Object value = first.get(5, TimeUnit.SECONDS).get();
+        assertSame("Coalesced loaders got different results.", value, second.get(5, TimeUnit.SECONDS).get());
+        assertEquals("doLoad() ran more than once for identical loads.", 1, loads.get());
+    }
+
+    // returns a payload from the given pool, and counts any release it shouldn't have been able to make
+    private static class PooledACL extends AsyncChainLoader<Object> {
+        private final PayloadPool mPool;
+        private final AtomicInteger mLoads;
+        final AtomicInteger mBadReleases = new AtomicInteger(0);
+
+        private PooledACL(Context context, PayloadPool pool, AtomicInteger loads) {
+            super(context, null);
+            mPool = pool;
+            mLoads = loads;
+        }
+
+        @Override
+        public Object doLoad() throws ChainLoaderException {
+            mLoads.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new ChainLoaderException(e);
+            }
+            return mPool.acquire(1024);
+        }
+
+        @Override
+        protected Object getCoalescingKey() {
+            return "pooled";
+        }
+
+        @Override
+        protected void onReleaseData(Result<Object> data) {
+            try {
+                super.onReleaseData(data);
+            } catch (IllegalStateException e) {
+                mBadReleases.incrementAndGet();
+            }
+        }
+    }
+
+    public void testCoalescedPayloadIsRetainedPerLoader() throws Exception {
+        PayloadPool pool = new PayloadPool(4096, 1024 * 1024);
+        AtomicInteger loads = new AtomicInteger(0);
+        PooledACL first = new PooledACL(getContext(), pool, loads);
+        PooledACL second = new PooledACL(getContext(), pool, loads);
+        ForkliftFuture<Result<Object>> firstFuture = Forklift.getAsync(first);
+        ForkliftFuture<Result<Object>> secondFuture = Forklift.getAsync(second);
+
+        PooledPayload payload = (PooledPayload)firstFuture.get(5, TimeUnit.SECONDS).get();
+        assertSame(payload, secondFuture.get(5, TimeUnit.SECONDS).get());
+        assertEquals(1, loads.get());
+
+        // getAsync() resets each loader right after its result, on the main thread, which releases it
+        final CountDownLatch synced = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                synced.countDown();
+            }
+        });
+        assertTrue(synced.await(5, TimeUnit.SECONDS));
+        assertEquals("A loader released a payload it held no reference to.", 0, first.mBadReleases.get() + second.mBadReleases.get());
+        assertEquals(0, payload.getReferenceCount());
+        assertEquals(0, pool.getLeakCount());
+    }
+
+    public void testChainIsShared() throws Exception {
+        AtomicInteger selfLoads = new AtomicInteger(0);
+        AtomicInteger chainLoads = new AtomicInteger(0);
+        SlowACL first = new SlowACL(getContext(), new SlowACL(getContext(), null, null, chainLoads, true), "chain", selfLoads, false);
+        SlowACL second = new SlowACL(getContext(), new SlowACL(getContext(), null, null, chainLoads, true), "chain", selfLoads, false);
+
+        ForkliftFuture<Result<Object>> firstFuture = Forklift.getAsync(first);
+        ForkliftFuture<Result<Object>> secondFuture = Forklift.getAsync(second);
+
+        Object value = firstFuture.get(5, TimeUnit.SECONDS).get();
+        assertSame("Loaders sharing a chain got different results.", value, secondFuture.get(5, TimeUnit.SECONDS).get());
+        assertEquals("Both chained loaders were started.", 1, chainLoads.get());
+    }
+
+    public void testSequentialLoadsAreNotShared() throws Exception {
+        AtomicInteger loads = new AtomicInteger(0);
+        Object one = Forklift.getSync(new SlowACL(getContext(), null, "sequential", loads, true)).get();
+        Object two = Forklift.getSync(new SlowACL(getContext(), null, "sequential", loads, true)).get();
+
+        assertNotSame(one, two);
+        assertEquals(2, loads.get());
+    }
+}
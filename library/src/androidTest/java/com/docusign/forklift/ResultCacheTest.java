@@ -0,0 +1,132 @@
+package com.docusign.forklift;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResultCacheTest extends AndroidTestCase {
+    private static class KeyedACL extends AsyncChainLoader<Object> {
+        private final Object mKey;
+        private final ResultCache mCache;
+        final AtomicInteger mLoads = new AtomicInteger(0);
+        final ArrayList<Result<Object>> mReleased = new ArrayList<Result<Object>>();
+
+        private KeyedACL(Context context, Object key, ResultCache cache) {
+            super(context, null);
+            mKey = key;
+            mCache = cache;
+        }
+
+        @Override
+        public Object doLoad() throws ChainLoaderException {
+            mLoads.incrementAndGet();
+            return new Object();
+        }
+
+        @Override
+        protected Object getCacheKey() {
+            return mKey;
+        }
+
+        @Override
+        protected ResultCache getResultCache() {
+            return mCache;
+        }
+
+        @Override
+        protected void onReleaseData(Result<Object> data) {
+            synchronized (mReleased) {
+                mReleased.add(data);
+            }
+        }
+    }
+
+    public void testLeastRecentlyUsedEviction() {
+        ResultCache cache = new ResultCache(2);
+        KeyedACL loader = new KeyedACL(getContext(), "unused", cache);
+        Result<Object> one = Result.success(new Object());
+        Result<Object> two = Result.success(new Object());
+        Result<Object> three = Result.success(new Object());
+
+        cache.put("one", one, null, loader);
+        cache.put("two", two, null, loader);
+        assertSame(one, cache.peek("one")); // "two" is now the eldest
+        cache.put("three", three, null, loader);
+
+        assertNull(cache.peek("two"));
+        assertSame(one, cache.peek("one"));
+        assertSame(three, cache.peek("three"));
+        assertEquals(1, loader.mReleased.size());
+        assertSame(two, loader.mReleased.get(0));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    public void testHeldResultOutlivesEviction() {
+        ResultCache cache = new ResultCache(1);
+        KeyedACL loader = new KeyedACL(getContext(), "unused", cache);
+        Result<Object> one = Result.success(new Object());
+
+        cache.put("one", one, null, loader);
+        assertSame(one, cache.acquire("one", loader));
+        cache.put("two", Result.success(new Object()), null, loader);
+
+        assertEquals("Result was released while a loader was still holding it.", 0, loader.mReleased.size());
+        assertTrue(cache.release(loader, one));
+        assertEquals(1, loader.mReleased.size());
+        assertSame(one, loader.mReleased.get(0));
+
+        assertFalse("Cache claimed a result it never saw.", cache.release(loader, Result.success(new Object())));
+    }
+
+    public void testEvictAll() {
+        ResultCache cache = new ResultCache(10);
+        KeyedACL loader = new KeyedACL(getContext(), "unused", cache);
+        ArrayList<Result<Object>> results = new ArrayList<Result<Object>>();
+        for (int i = 0; i < 4; i++) {
+            results.add(Result.success(new Object()));
+            cache.put("result" + i, results.get(i), null, loader);
+        }
+
+        cache.evictAll();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+        assertEquals(4, cache.getEvictionCount());
+        assertEquals(4, loader.mReleased.size());
+        assertTrue(loader.mReleased.containsAll(results));
+        for (int i = 0; i < 4; i++)
+            assertNull(cache.peek("result" + i));
+    }
+
+    public void testWeigher() {
+        ResultCache cache = new ResultCache(10, new ResultCache.Weigher() {
+            @Override
+            public int weigh(Object key, Result<?> result) {
+                return 4;
+            }
+        });
+        KeyedACL loader = new KeyedACL(getContext(), "unused", cache);
+
+        cache.put("one", Result.success(new Object()), null, loader);
+        cache.put("two", Result.success(new Object()), null, loader);
+        assertEquals(8, cache.weight());
+        cache.put("three", Result.success(new Object()), null, loader);
+        assertEquals(2, cache.size());
+        assertEquals(8, cache.weight());
+    }
+
+    public void testCacheHitSkipsLoad() throws Exception {
+        ResultCache cache = new ResultCache(4);
+        KeyedACL first = new KeyedACL(getContext(), "shared", cache);
+        KeyedACL second = new KeyedACL(getContext(), "shared", cache);
+
+        Object value = Forklift.getSync(first).get();
+        assertSame(value, Forklift.getSync(second).get());
+        assertEquals(1, first.mLoads.get());
+        assertEquals("Cached result was loaded again.", 0, second.mLoads.get());
+    }
+}
@@ -0,0 +1,84 @@
+package com.docusign.forklift;
+
+import android.content.Context;
+import android.support.v4.content.Loader;
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+public class TraceRecorderTest extends AndroidTestCase {
+    private static final Object RESULT = new Object();
+
+    private static class TracedACL extends AsyncChainLoader<Object> {
+        private final Object mResult; // NO_RESULT to fall through
+
+        private TracedACL(Context context, Loader<Result<Object>> chain, Object result) {
+            super(context, chain);
+            mResult = result;
+        }
+
+        @Override
+        public Object doLoad() throws ChainLoaderException {
+            if (mResult instanceof ChainLoaderException)
+                throw (ChainLoaderException)mResult;
+            return mResult;
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TraceRecorder.setCurrent(null);
+        super.tearDown();
+    }
+
+    public void testChainExecutionIsTraced() throws Exception {
+        TraceRecorder recorder = new TraceRecorder();
+        TraceRecorder.setCurrent(recorder);
+
+        TracedACL loader = new TracedACL(getContext(), new TracedACL(getContext(), null, RESULT), AsyncChainLoader.NO_RESULT);
+        assertSame(RESULT, Forklift.getAsync(loader).get(5, TimeUnit.SECONDS).get());
+        TraceRecorder.setCurrent(null);
+
+        String json = recorder.toJson();
+        assertTrue(json, json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(json, json.endsWith("]}"));
+        assertTrue(json, json.contains("\"name\":\"LOADING_SELF\",\"cat\":\"forklift\",\"ph\":\"b\""));
+        assertTrue(json, json.contains("\"name\":\"LOADING_CHAIN\",\"cat\":\"forklift\",\"ph\":\"b\""));
+        assertTrue(json, json.contains("\"name\":\"queued\",\"cat\":\"forklift\",\"ph\":\"e\""));
+        assertTrue(json, json.contains("\"name\":\"onFallbackDelivered\",\"cat\":\"forklift\",\"ph\":\"E\""));
+        assertTrue(json, json.contains("\"name\":\"thread_name\""));
+        assertTrue(json, json.contains("\"loader\":\"" + TracedACL.class.getName() + "\""));
+        assertEquals(count(json, "\"ph\":\"B\""), count(json, "\"ph\":\"E\""));
+    }
+
+    public void testRingBufferKeepsNewestEvents() {
+        TraceRecorder recorder = new TraceRecorder(3); // rounded up to 4
+        TraceRecorder.setCurrent(recorder);
+
+        for (int i = 0; i < 10; i++)
+            TraceRecorder.begin(i < 6 ? "old" : "new", null);
+
+        assertEquals(4, recorder.getEventCount());
+        assertEquals(6, recorder.getDroppedCount());
+        String json = recorder.toJson();
+        assertEquals(4, count(json, "\"name\":\"new\""));
+        assertEquals(0, count(json, "\"name\":\"old\""));
+
+        recorder.clear();
+        assertEquals(0, recorder.getEventCount());
+        assertEquals("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[]}", recorder.toJson());
+    }
+
+    public void testNothingRecordedWhenNotInstalled() {
+        TraceRecorder recorder = new TraceRecorder(8);
+        TraceRecorder.begin("ignored", null);
+        assertEquals(0, recorder.getEventCount());
+    }
+
+    private static int count(String haystack, String needle) {
+        int count = 0;
+        for (int i = haystack.indexOf(needle); i >= 0; i = haystack.indexOf(needle, i + needle.length()))
+            count++;
+        return count;
+    }
+}
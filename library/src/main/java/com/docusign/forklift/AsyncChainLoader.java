@@ -2,8 +2,6 @@ package com.docusign.forklift;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
-import android.os.AsyncTask;
-import android.os.Build;
 import android.os.SystemClock;
 import android.support.v4.content.AsyncTaskLoader;
 import android.support.v4.content.Loader;
@@ -12,6 +10,10 @@ import android.util.Log;
 import com.docusign.forklift.Result.Type;
 
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
         implements Loader.OnLoadCompleteListener<Result<T>> {
@@ -27,30 +29,33 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
 
         @Override
         protected Result<T> getSync() throws LoadCancelledException {
-            T ret;
+            Object cacheKey = m_Loader.getCacheKey();
+            if (cacheKey != null) {
+                Result<T> cached = m_Loader.getResultCache().peek(cacheKey);
+                if (cached != null)
+                    return cached;
+            }
+
             resetSynchronouslyOnUiThread();
             try {
-                try {
-                    m_Loader.m_State = LOADING_SELF;
-                    ret = m_Loader.doLoad();
-                    return Result.success(ret);
-                } catch (NoResultException e) {
-                    if (m_Loader.getChainLoader() == null)
-                        throw new UnsupportedOperationException("If there is no chained loader, doLoad() must return a result.");
-
-                    if (m_Loader.m_State != LOADING_SELF)
-                        throw new LoadCancelledException();
-
-                    m_Loader.m_State = LOADING_CHAIN;
-                    m_Loader.getChainLoader().unregisterListener(m_Loader);
-                    ret = Forklift.getSync(m_Loader.getChainLoader()).get();
-                    m_Loader.getChainLoader().registerListener(0, m_Loader);
-
-                    if (m_Loader.m_State != LOADING_CHAIN)
-                        throw new LoadCancelledException();
-                    m_Loader.onFallbackDelivered(ret, null); // TODO: this doesn't understand PARTIAL!
-                    return Result.success(ret);
-                }
+                m_Loader.m_State.moveTo(ChainState.LOADING_SELF);
+                Result<T> self = rethrowCancellation(m_Loader.coalescedLoadSelf());
+                if (self != null)
+                    return self.getType() == Type.COMPLETE ? cache(cacheKey, self) : self;
+
+                if (m_Loader.m_State.get() != ChainState.LOADING_SELF)
+                    throw new LoadCancelledException();
+
+                // only the self-load is coalesced here - the chained loader is driven synchronously, and belongs to this loader alone
+                m_Loader.m_State.moveTo(ChainState.LOADING_CHAIN);
+                m_Loader.getChainLoader().unregisterListener(m_Loader);
+                Result<T> chained = Forklift.getSync(m_Loader.getChainLoader());
+                m_Loader.getChainLoader().registerListener(0, m_Loader);
+
+                if (m_Loader.m_State.get() != ChainState.LOADING_CHAIN)
+                    throw new LoadCancelledException();
+                Result<T> ret = new Result<T>(m_Loader.onFallbackDelivered(chained.get(), chained.getType()), null, chained.getType());
+                return ret.getType() == Type.COMPLETE ? cache(cacheKey, ret) : ret;
             } catch (LoadCancelledException e) {
                 throw e;
             } catch (ChainLoaderException e) {
@@ -59,41 +64,163 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
                 resetSynchronouslyOnUiThread();
             }
         }
+
+        private Result<T> cache(Object cacheKey, Result<T> result) {
+            if (cacheKey != null)
+                m_Loader.getResultCache().put(cacheKey, result, null, m_Loader);
+            return result;
+        }
+    }
+
+    // a synchronous load reports a doLoad() that was cancelled by throwing, not as a failed result
+    private static <T> Result<T> rethrowCancellation(Result<T> result) throws LoadCancelledException {
+        if (result != null && result.getType() == Type.FAILURE) {
+            try {
+                result.get();
+            } catch (LoadCancelledException e) {
+                throw e;
+            } catch (ChainLoaderException ignored) { }
+        }
+        return result;
     }
 
-    private class FallbackDeliveredAsyncTask extends AsyncTask<Result<T>, Void, Result<T>> {
+    /**
+     * Streams an AsyncChainLoader the same way {@link ACLForklift} runs it, but keeps going through every result of the chain,
+     * pulling the next one only when it's asked for.
+     */
+    /* package */ static class ACLStream<T> implements ForkliftStream.Source<T> {
+
+        private final AsyncChainLoader<T> m_Loader;
+        private final int mMaxBuffered;
+        private boolean mStarted;
+        private volatile ForkliftStream.Source<T> mChain;
+
+        public ACLStream(AsyncChainLoader<T> loader, int maxBuffered) {
+            m_Loader = loader;
+            mMaxBuffered = maxBuffered;
+        }
+
         @Override
-        protected Result<T> doInBackground(Result<T>... params) {
-            if (isCancelled())
-                return null;
+        public Result<T> next() throws LoadCancelledException {
+            if (mStarted)
+                return mChain == null ? null : nextFromChain();
+
+            mStarted = true;
+            Object cacheKey = m_Loader.getCacheKey();
+            if (cacheKey != null) {
+                Result<T> cached = m_Loader.getResultCache().peek(cacheKey);
+                if (cached != null)
+                    return cached;
+            }
+
+            ForkliftStream.resetSynchronouslyOnUiThread(m_Loader);
+            m_Loader.m_State.moveTo(ChainState.LOADING_SELF);
+            Result<T> self = rethrowCancellation(m_Loader.coalescedLoadSelf());
+            if (self != null)
+                return self.getType() == Type.COMPLETE ? cache(self) : self;
+
+            if (m_Loader.m_State.get() != ChainState.LOADING_SELF)
+                throw new LoadCancelledException();
+
+            m_Loader.m_State.moveTo(ChainState.LOADING_CHAIN);
+            m_Loader.getChainLoader().unregisterListener(m_Loader);
+            mChain = ForkliftStream.sourceFor(m_Loader.getChainLoader(), mMaxBuffered);
+            return nextFromChain();
+        }
+
+        private Result<T> nextFromChain() throws LoadCancelledException {
+            while (true) {
+                Result<T> chained = mChain.next();
+                if (chained == null)
+                    return null;
+                if (m_Loader.m_State.get() != ChainState.LOADING_CHAIN)
+                    throw new LoadCancelledException();
+
+                try {
+                    Result<T> ret = new Result<T>(m_Loader.onFallbackDelivered(chained.get(), chained.getType()), null, chained.getType());
+                    return ret.getType() == Type.COMPLETE ? cache(ret) : ret;
+                } catch (NoResultException nores) {
+                    // nothing to show for this one, on to the next
+                } catch (ChainLoaderException e) {
+                    return Result.failure(e);
+                }
+            }
+        }
+
+        private Result<T> cache(Result<T> result) {
+            Object cacheKey = m_Loader.getCacheKey();
+            if (cacheKey != null)
+                m_Loader.getResultCache().put(cacheKey, result, null, m_Loader);
+            return result;
+        }
+
+        @Override
+        public void cancel() {
+            ForkliftStream.Source<T> chain = mChain;
+            if (chain != null)
+                chain.cancel();
+            ForkliftStream.resetSynchronouslyOnUiThread(m_Loader); // trips the state checks of anything running inline
+        }
+
+        @Override
+        public void release() {
+            if (mChain != null) {
+                mChain.release();
+                m_Loader.getChainLoader().registerListener(0, m_Loader);
+            }
+            ForkliftStream.resetSynchronouslyOnUiThread(m_Loader);
+        }
+    }
+
+    private final class FallbackDeliveryWorker extends DeliveryWorker<T> {
+
+        FallbackDeliveryWorker(Executor deliveryExecutor) {
+            super(AsyncChainLoader.this, deliveryExecutor, MainThreadHost.get());
+        }
 
-            Result<T> data = (Result<T>)params[0];
+        @Override
+        protected Result<T> process(Result<T> data, long queuedAt) {
+            AsyncChainLoader.this.endTiming(ForkliftMetrics.Stage.DELIVERY_QUEUED, queuedAt, null);
+            PooledPayload payload = PooledPayload.of(data);
 
+            long start = ForkliftMetrics.start();
+            TraceRecorder.begin("onFallbackDelivered", AsyncChainLoader.this);
             try {
                 data = new Result<T>(AsyncChainLoader.this.onFallbackDelivered(data.get(), data.getType()), null, data.getType());
             } catch (NoResultException nores) {
                 data = null;
             } catch (ChainLoaderException e) {
                 data = Result.failure(e);
+            } finally {
+                TraceRecorder.end("onFallbackDelivered", AsyncChainLoader.this);
             }
+            AsyncChainLoader.this.endTiming(ForkliftMetrics.Stage.FALLBACK_DELIVERED, start, data == null ? null : data.getType());
+            if (payload != null && PooledPayload.of(data) != payload)
+                payload.release(); // our reference to the chain's payload only lives on if our result carries it
 
             return data;
         }
 
         @Override
-        protected void onCancelled(Result<T> result) {
-            removeTask(this);
+        protected void deliver(Result<T> result, long readyAt) {
+            AsyncChainLoader.this.endTiming(ForkliftMetrics.Stage.DELIVER_RESULT_HOP, readyAt, ForkliftMetrics.typeOf(result));
+            AsyncChainLoader.this.deliverResult(result);
         }
 
         @Override
-        protected void onPostExecute(Result<T> result) {
-            AsyncChainLoader.this.deliverResult(result);
-            removeTask(this);
+        protected void discard(Result<T> data) {
+            releasePayload(data);
         }
-    }
 
-    private static class NoResultException extends ChainLoaderException {
-        private static final long serialVersionUID = 2596920468208815208L;
+        @Override
+        protected void drop(Result<T> data) {
+            releaseData(data);
+        }
+
+        @Override
+        protected void fail(Result<T> failure) {
+            deliverResult(failure);
+        }
     }
 
     /**
@@ -102,16 +229,18 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
      */
     protected static final NoResultException NO_RESULT = new NoResultException();
 
-    private static final int INITIALIZED 		= 0;
-    private static final int LOADING_SELF 		= INITIALIZED + 1;
-    private static final int LOADING_CHAIN		= LOADING_SELF + 1;
-    @SuppressWarnings("unused")
-    private static final int ALL_LOADS_COMPLETE = LOADING_CHAIN + 1; // this should always be "last + 1"
+
+    private static final long DELIVERY_WARNING_MILLIS = 5000;
 
     private final Loader<Result<T>> m_Chain;
-    private final ArrayList<AsyncTask<?, ?, ?>> mFallbackDeliveredTasks;
+    private final FallbackDeliveryWorker mDeliveryWorker;
+    private final Executor mLoadExecutor; // null for AsyncTaskLoader's own
     private Result<T> m_Data;
-    private int m_State;
+    private final ChainState m_State;
+    private LoadCoalescer.SharedChain<T> mSharedChain;
+    private boolean mSpeculating;
+    private final ArrayList<Result<T>> mHeldChainResults = new ArrayList<Result<T>>(); // main thread only
+    private volatile long mSelfReadyAt;
     private final Throwable mCreatedLocation;
 
     /**
@@ -120,12 +249,27 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
      * @param chain Another loader to process after this one completes its own loading.
      */
     public AsyncChainLoader(Context context, Loader<Result<T>> chain) {
+        this(context, chain, null, null);
+    }
+
+    /**
+     * Constructor, for loaders whose work shouldn't compete with everybody else's, e.g. a heavy decode in
+     * {@link #onFallbackDelivered(Object, Result.Type)}. To give a whole loader class its own pools, pass them from its constructor.
+     * @param context Context that this loader should be attached to.
+     * @param chain Another loader to process after this one completes its own loading.
+     * @param loadExecutor Where {@link #doLoad()} runs when this loader is started, or null for AsyncTaskLoader's own pool. The
+     *                     AsyncTaskLoader still parks one of its threads waiting for the result; synchronous loads run on the caller.
+     * @param deliveryExecutor Where {@link #onFallbackDelivered(Object, Result.Type)} runs, or null for the shared fallback delivery
+     *                         pool. Deliveries still run one at a time, in order, whatever executor they're on.
+     */
+    public AsyncChainLoader(Context context, Loader<Result<T>> chain, Executor loadExecutor, Executor deliveryExecutor) {
         super(context);
 
         m_Chain = chain;
-        mFallbackDeliveredTasks = new ArrayList<AsyncTask<?, ?, ?>>();
+        mLoadExecutor = loadExecutor;
+        mDeliveryWorker = new FallbackDeliveryWorker(deliveryExecutor);
 
-        m_State = INITIALIZED;
+        m_State = new ChainState(this);
 
         if (m_Chain != null)
             m_Chain.registerListener(0, this);
@@ -133,11 +277,44 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
         mCreatedLocation = new Exception().fillInStackTrace();
     }
 
-    private void removeTask(FallbackDeliveredAsyncTask task) {
-        synchronized (mFallbackDeliveredTasks) {
-            mFallbackDeliveredTasks.remove(task);
-            mFallbackDeliveredTasks.notifyAll();
-        }
+    private void cancelDeliveries() {
+        // the one already running finishes anyway; it leaves the barrier once it does
+        mDeliveryWorker.cancel();
+    }
+
+    /**
+     * Sets how urgently this loader's fallback deliveries run, relative to other loaders'. Can be changed at any time, e.g. as the
+     * screen behind a loader is shown or hidden; takes effect from the next delivery.
+     * @param priority One of the {@link DeliveryPriority} levels, or any other int; higher runs sooner.
+     */
+    public void setDeliveryPriority(int priority) {
+        mDeliveryWorker.getLane().setPriority(priority);
+    }
+
+    public int getDeliveryPriority() {
+        return mDeliveryWorker.getLane().getPriority();
+    }
+
+    /* package */ Object getMetricsKey() {
+        Object key = getCacheKey();
+        return key != null ? key : getCoalescingKey();
+    }
+
+    private void endTiming(ForkliftMetrics.Stage stage, long start, Type type) {
+        if (start != 0) // otherwise nobody was listening when the stage started
+            ForkliftMetrics.end(stage, this, getMetricsKey(), start, type);
+    }
+
+    /* package */ int getPendingDeliveries() {
+        return mDeliveryWorker.getPending();
+    }
+
+    /* package */ Executor getFallbackDeliveryLane() {
+        return mDeliveryWorker.getLane();
+    }
+
+    /* package */ void setSharedChain(LoadCoalescer.SharedChain<T> chain) {
+        mSharedChain = chain;
     }
 
     // TODO: wrap this somehow and make it work
@@ -152,18 +329,37 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
         releaseData(m_Data);
 
         m_Data = null;
-        m_State = INITIALIZED;
+        m_State.moveTo(ChainState.INITIALIZED);
+        mSpeculating = false;
+        dropHeldChainResults();
 
         if (m_Chain != null)
-            m_Chain.reset();
+            resetChain();
 
-        for (AsyncTask<?, ?, ?> task : mFallbackDeliveredTasks)
-            task.cancel(false);
+        cancelDeliveries();
+    }
+
+    /** @inheritDoc */
+    @Override
+    protected void onForceLoad() {
+        // whatever the chain delivered before this reload is about to be superseded, so don't make the reload wait for it
+        cancelDeliveries();
+        super.onForceLoad();
     }
 
     /** @inheritDoc */
     @Override
     protected final void onStartLoading() {
+        if (m_Data == null && m_State.get() == ChainState.INITIALIZED) {
+            Object cacheKey = getCacheKey();
+            Result<T> cached = cacheKey == null ? null : getResultCache().acquire(cacheKey, this);
+            if (cached != null) {
+                m_State.moveTo(ChainState.ALL_LOADS_COMPLETE); // nothing left to do, neither here nor in the chain
+                deliverResult(cached);
+                return;
+            }
+        }
+
         if (m_Data != null)
             deliverResult(m_Data);
 
@@ -171,13 +367,41 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
     }
 
     private void performLoad() {
-        if (m_State < LOADING_SELF)
+        if (m_State.get() < ChainState.LOADING_SELF) {
             forceLoad();
-        else if (m_State < LOADING_CHAIN && m_Chain != null) {
-            m_Chain.startLoading();
+            if (m_Chain != null && isChainSpeculative()) {
+                mSpeculating = true;
+                startChain();
+            }
+        } else if (m_State.get() < ChainState.LOADING_CHAIN && m_Chain != null) {
+            if (mSpeculating) {
+                // the chain is already running; whatever it got done while we were loading is delivered now, in order
+                mSpeculating = false;
+                for (Result<T> held : mHeldChainResults)
+                    enqueueFallbackDelivery(held);
+                mHeldChainResults.clear();
+            } else {
+                startChain();
+            }
         }
 
-        m_State++;
+        m_State.advance();
+    }
+
+    private void startChain() {
+        Object coalescingKey = getCoalescingKey();
+        if (coalescingKey == null || LoadCoalescer.joinChain(coalescingKey, this))
+            m_Chain.startLoading();
+    }
+
+    private void resetChain() {
+        if (mSharedChain == null || mSharedChain.leave(this))
+            m_Chain.reset();
+    }
+
+    // the chained loader of a shared chain's owner keeps running after the owner is reset, until the last subscriber is done with it
+    /* package */ void resetChainLoader() {
+        m_Chain.reset();
     }
 
     /** @inheritDoc */
@@ -190,6 +414,7 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
     @Override
     public void onCanceled(Result<T> data) {
         super.onCanceled(data);
+        mSelfReadyAt = 0;
         // TODO: should we be resetting anything here? state, specifically?
         releaseData(data);
     }
@@ -201,18 +426,40 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
             return;
         }
 
+        long selfReadyAt = mSelfReadyAt;
+        if (selfReadyAt != 0) { // fresh from loadInBackground()
+            mSelfReadyAt = 0;
+            endTiming(ForkliftMetrics.Stage.DELIVER_RESULT_HOP, selfReadyAt, ForkliftMetrics.typeOf(data));
+        }
+
         Result<T> oldData = m_Data;
         m_Data = data;
 
+        if (data != null && data.getType() == Type.COMPLETE) {
+            Object cacheKey = getCacheKey();
+            if (cacheKey != null)
+                getResultCache().put(cacheKey, data, this, this);
+        }
+
         // we don't deliver null data here because it's actually a null Result<T> object
         // if the intent is to actually deliver "null" as a result, you can return Result.success(null)
         if (isStarted() && !isAbandoned() && m_Data != null) {
             super.deliverResult(m_Data);
-            releaseData(oldData);
+            if (oldData != data) // redelivering what we already had, e.g. from onStartLoading
+                releaseData(oldData);
+
+            if (isReset()) // our listener is done with us (see Forklift.getAsync), don't go on to load anything else
+                return;
         }
 
-        if (data == null || data.getType() == Type.COMPLETE)
+        if (data == null || data.getType() == Type.COMPLETE) {
             performLoad();
+        } else if (mSpeculating && data.getType() == Type.FAILURE) {
+            // our own load failed, so the chain would never have been started; forget it ever was
+            mSpeculating = false;
+            dropHeldChainResults();
+            resetChain();
+        }
     }
 
     /**
@@ -220,16 +467,36 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
      * @param data
      */
     protected final void releaseData(Result<T> data) {
-        if (data != null)
+        if (data == null)
+            return;
+
+        // data shared through the cache is only really released once nobody else can be using it
+        if (getCacheKey() == null || !getResultCache().release(this, data))
             onReleaseData(data);
     }
 
     /**
-     *
-     * @param data
+     * Called when this loader is done with a result: one of its own that has been replaced or reset, or one of its chained loader's
+     * that it dropped (see {@link #isConflatingPartials()} and {@link #getOverflowPolicy()}). By default, releases the result's
+     * {@link PooledPayload}, if it carries one; overrides should call through if this loader deals in pooled payloads.
+     * @param data The result to release.
      */
     protected void onReleaseData(Result<T> data) {
+        releasePayload(data);
+    }
 
+    // gives up this loader's reference to the result's pooled payload, if it carries one
+    private static void releasePayload(Result<?> data) {
+        PooledPayload payload = PooledPayload.of(data);
+        if (payload != null)
+            payload.release();
+    }
+
+    // chain results held back while speculating, that will never be delivered now
+    private void dropHeldChainResults() {
+        for (Result<T> held : mHeldChainResults)
+            releasePayload(held);
+        mHeldChainResults.clear();
     }
 
     /** @inheritDoc */
@@ -239,12 +506,41 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
         if (loader != m_Chain)
             throw new UnsupportedOperationException("ChainAsyncTaskLoader must only handle callbacks for its chained loader.");
 
+        if (mSharedChain != null && mSharedChain.isOwner(this))
+            mSharedChain.publish(data);
+
         if (!isStarted()) return;
 
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB)
-            mFallbackDeliveredTasks.add(new FallbackDeliveredAsyncTask().execute(data));
+        onChainResult(data);
+    }
+
+    // a result from the chained loader of another loader we're sharing a chain with
+    /* package */ void onSharedChainResult(Result<T> data) {
+        if (isStarted())
+            onChainResult(data);
+    }
+
+    private void onChainResult(Result<T> data) {
+        PooledPayload payload = PooledPayload.of(data);
+        if (payload != null)
+            payload.retain(); // ours until we're done with it; the chain releases its own
+
+        if (mSpeculating)
+            mHeldChainResults.add(data); // not until our own load is done
         else
-            mFallbackDeliveredTasks.add(new FallbackDeliveredAsyncTask().executeOnExecutor(FallbackDeliveryExecutor.get(this), data));
+            enqueueFallbackDelivery(data);
+    }
+
+    private void enqueueFallbackDelivery(Result<T> data) {
+        if (isConflatingPartials()) {
+            Result<T> dropped = mDeliveryWorker.conflate(data);
+            if (dropped != null) {
+                releaseData(dropped);
+                return;
+            }
+        }
+
+        mDeliveryWorker.offer(data, getDeliveryCapacity(), getOverflowPolicy());
     }
 
     /**
@@ -265,32 +561,102 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
     /** @inheritDoc */
     @Override
     public Result<T> loadInBackground() {
-        synchronized (mFallbackDeliveredTasks) {
-            long start = SystemClock.currentThreadTimeMillis();
-            while (!mFallbackDeliveredTasks.isEmpty()) {
+        DeliveryBarrier deliveries = mDeliveryWorker.getBarrier();
+        if (!deliveries.isIdle()) {
+            long start = SystemClock.elapsedRealtime();
+            while (!deliveries.awaitIdle(DELIVERY_WARNING_MILLIS))
+                Log.w("DocuSign", "Waited " + (SystemClock.elapsedRealtime() - start) + "ms for onFallbackDelivered to finish: " + this);
+            onDeliveriesAwaited(SystemClock.elapsedRealtime() - start);
+        }
+
+        Result<T> result = mLoadExecutor == null ? coalescedLoadSelf() : loadSelfOn(mLoadExecutor);
+        mSelfReadyAt = ForkliftMetrics.start();
+        return result;
+    }
+
+    // AsyncTaskLoader doesn't let us choose where loadInBackground() runs, so hop over to the loader's own executor and wait there
+    private Result<T> loadSelfOn(Executor executor) {
+        FutureTask<Result<T>> load = new FutureTask<Result<T>>(new Callable<Result<T>>() {
+            @Override
+            public Result<T> call() {
+                return coalescedLoadSelf();
+            }
+        });
+        executor.execute(load);
+
+        boolean interrupted = false;
+        try {
+            while (true) {
                 try {
-                    mFallbackDeliveredTasks.wait(5000);
-                } catch (InterruptedException ignored) { }
-                if (SystemClock.currentThreadTimeMillis() - start > 5000)
-                    Log.w("DocuSign", "Waiting for onFallbackDelivered to finish: " + this);
+                    return load.get();
+                } catch (InterruptedException e) {
+                    interrupted = true; // the load is running regardless; wait it out like any other
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    if (cause instanceof Error)
+                        throw (Error)cause;
+                    throw new RuntimeException(cause); // coalescedLoadSelf() throws nothing checked
+                }
             }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
         }
+    }
 
+    /**
+     * Called on the loading thread when a load had to wait for deliveries from the chained loader to finish before it could start.
+     * Loads never overtake deliveries, so a slow {@link #onFallbackDelivered(Object, Result.Type)} holds up every reload behind it.
+     * @param waitedMillis How long the load waited, in wall-clock time.
+     */
+    protected void onDeliveriesAwaited(long waitedMillis) {
+
+    }
+
+    // runs doLoad(), or waits for an identical load that's already running. returns null if there is no result.
+    private Result<T> coalescedLoadSelf() {
+        Object coalescingKey = getCoalescingKey();
+        if (coalescingKey == null)
+            return loadSelf();
+
+        Result<T> result = LoadCoalescer.loadSelf(coalescingKey, new Callable<Result<T>>() {
+            @Override
+            public Result<T> call() {
+                return loadSelf();
+            }
+        });
+
+        if (result == null && m_Chain == null) // somebody else's doLoad() fell back to their chain, but we have none
+            throw new UnsupportedOperationException("If there is no chained loader, doLoad() must return a result.");
+        return result;
+    }
+
+    private Result<T> loadSelf() {
+        long start = ForkliftMetrics.start();
+        Result<T> result = null;
+        TraceRecorder.begin("doLoad", this);
         try {
-            return Result.success(doLoad());
+            result = Result.success(doLoad());
+            return result;
         } catch (NoResultException nores) {
             if (m_Chain == null)
                 throw new UnsupportedOperationException("If there is no chained loader, doLoad() must return a result.");
 
             return null;
         } catch (ChainLoaderException err) {
-            return Result.failure(err);
+            result = Result.failure(err);
+            return result;
         } catch (Error err) {
             Log.e("AsyncChainLoader", "The following exception occurred during processing of an AsyncChainLoader started at:", mCreatedLocation);
             throw err;
         } catch (RuntimeException re) {
             Log.e("AsyncChainLoader", "The following exception occurred during processing of an AsyncChainLoader started at:", mCreatedLocation);
             throw re;
+        } finally {
+            TraceRecorder.end("doLoad", this);
+            endTiming(ForkliftMetrics.Stage.LOAD, start, result == null ? null : result.getType());
         }
     }
 
@@ -301,6 +667,89 @@ public abstract class AsyncChainLoader<T> extends AsyncTaskLoader<Result<T>>
      */
     public abstract T doLoad() throws ChainLoaderException;
 
+    /**
+     * Opts this loader into sharing its complete results through a {@link com.docusign.forklift.ResultCache}. If a result is cached under
+     * this key when the loader starts, it is delivered straight away and neither {@link #doLoad()} nor the chained loader is run.
+     * Every complete result this loader delivers replaces the cached one.
+     *
+     * The key must identify the data (including its type), not the loader instance, and must not change while the loader is in use.
+     * @return The key to cache this loader's results under, or null (the default) to not cache them.
+     */
+    protected Object getCacheKey() {
+        return null;
+    }
+
+    /**
+     * Opts this loader into conflating the partial results of its chained loader. Normally every result the chained loader delivers is
+     * passed to {@link #onFallbackDelivered(Object, Result.Type)}, so a chained loader that delivers partial results faster than they can
+     * be processed builds up a backlog, and this loader's consumer sees stale data long after newer data exists. When conflating, a partial
+     * result that is still waiting to be processed is replaced by the next partial result, and handed to {@link #onReleaseData(Result)}.
+     * Complete results and failures are never dropped, and results are still processed in order.
+     * @return true to conflate partial results. Defaults to false.
+     */
+    protected boolean isConflatingPartials() {
+        return false;
+    }
+
+    /**
+     * Limits how many results of the chained loader can be waiting on {@link #onFallbackDelivered(Object, Result.Type)} at once, so
+     * that a chained loader that delivers faster than they can be processed can't build up an unbounded backlog. A result counts from
+     * when the chained loader delivers it until onFallbackDelivered() is done with it; conflated partial results don't count. There's
+     * also a limit across all loaders, {@link DeliveryLimits#setGlobalCapacity(int)}.
+     * @return The most deliveries this loader may have pending. Defaults to Integer.MAX_VALUE, i.e. no limit.
+     */
+    protected int getDeliveryCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Decides what happens to a result of the chained loader that arrives when this loader, or the process, is at its
+     * {@link #getDeliveryCapacity() delivery capacity}. Results dropped to make room are handed to {@link #onReleaseData(Result)}.
+     * @return The policy to apply. Defaults to {@link OverflowPolicy#DROP_OLDEST_PARTIAL}, which never holds up the main thread.
+     *         Results are handed over on the main thread, so {@link OverflowPolicy#BLOCK} stalls it until there's room, and risks an
+     *         ANR; only use it with limits that are rarely reached.
+     */
+    protected OverflowPolicy getOverflowPolicy() {
+        return OverflowPolicy.DROP_OLDEST_PARTIAL;
+    }
+
+    /**
+     * Opts this loader into starting its chained loader at the same time as {@link #doLoad()}, rather than only once doLoad() is done.
+     * This takes the latency of doLoad() out of the way of the chain, which pays off when doLoad() often has no result (e.g. a cache
+     * that usually misses in front of the network).
+     *
+     * What gets delivered, and in what order, is unchanged: anything the chained loader returns is held back until this loader's own
+     * result has been delivered, and only then passed to {@link #onFallbackDelivered(Object, Result.Type)}, in order. If doLoad()
+     * fails, the chained loader is reset and its results are dropped, just as if it had never been started.
+     *
+     * Only applies to loaders started through {@link #startLoading()} (including {@link Forklift#getAsync(android.support.v4.content.Loader)});
+     * {@link Forklift#getSync(android.support.v4.content.Loader)} still only goes to the chain if doLoad() has no result.
+     * @return true to start the chained loader speculatively. Defaults to false.
+     */
+    protected boolean isChainSpeculative() {
+        return false;
+    }
+
+    /**
+     * Opts this loader into sharing its loads with any other loader that is loading under the same key at the same time: {@link #doLoad()}
+     * is only run by whichever of them gets there first, and only that one's chained loader is started. Everybody else waits for
+     * (or subscribes to) the results, which are still passed through their own {@link #onFallbackDelivered(Object, Result.Type)}.
+     *
+     * The loaders end up with the very same {@link com.docusign.forklift.Result} objects, so if {@link #onReleaseData(Result)} matters,
+     * return a {@link #getCacheKey()} too - the cache keeps track of who is still holding a result before releasing it.
+     * @return The key identifying this loader's load, or null (the default) to always load independently.
+     */
+    protected Object getCoalescingKey() {
+        return null;
+    }
+
+    /**
+     * @return The cache to use if {@link #getCacheKey()} returns a key. Defaults to {@link ResultCache#getDefault()}.
+     */
+    protected ResultCache getResultCache() {
+        return ResultCache.getDefault();
+    }
+
     /**
      * Retrieves the {@link android.support.v4.content.Loader} that will be processed after this loader completes its own processing.
      * @return The chained {@link android.support.v4.content.Loader}
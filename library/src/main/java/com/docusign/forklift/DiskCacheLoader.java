@@ -0,0 +1,193 @@
+package com.docusign.forklift;
+
+import android.content.Context;
+import android.support.v4.content.Loader;
+import android.util.Log;
+
+import com.docusign.forklift.Result.Type;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link com.docusign.forklift.AsyncChainLoader} that loads its data from a {@link com.docusign.forklift.MappedDiskStore}, falling
+ * back to its chained loader (typically one that goes to the network) if there is nothing stored. Every complete result the chained
+ * loader delivers is written through to the store, so the next load finds it.
+ *
+ * Corrupt or unreadable data is treated as if nothing was stored; the cache never turns a load into a failure.
+ *
+ * @param <T> The type of data being loaded
+ */
+public class DiskCacheLoader<T> extends AsyncChainLoader<T> {
+
+    /**
+     * Converts values to and from the bytes kept in a {@link com.docusign.forklift.MappedDiskStore}.
+     */
+    public interface Codec<T> {
+        byte[] encode(T value) throws IOException;
+
+        /**
+         * @param buffer A read-only buffer holding exactly the encoded value. It reads straight out of the mapped file, so decoding
+         *               directly from it (rather than copying it out first) is cheapest.
+         */
+        T decode(ByteBuffer buffer) throws IOException;
+    }
+
+    /**
+     * @return A codec that uses Java serialization. Convenient, but much slower and bulkier than a codec written for the data at hand.
+     */
+    public static <T extends Serializable> Codec<T> serializableCodec() {
+        return new Codec<T>() {
+            @Override
+            public byte[] encode(T value) throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(bytes);
+                out.writeObject(value);
+                out.close();
+                return bytes.toByteArray();
+            }
+
+            @Override
+            public T decode(final ByteBuffer buffer) throws IOException {
+                ObjectInputStream in = new ObjectInputStream(new InputStream() {
+                    @Override
+                    public int read() {
+                        return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) {
+                        if (!buffer.hasRemaining())
+                            return -1;
+                        len = Math.min(len, buffer.remaining());
+                        buffer.get(b, off, len);
+                        return len;
+                    }
+                });
+
+                try {
+                    @SuppressWarnings("unchecked")
+                    T value = (T)in.readObject();
+                    return value;
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e.toString());
+                } catch (ClassCastException e) {
+                    throw new IOException(e.toString());
+                } finally {
+                    in.close();
+                }
+            }
+        };
+    }
+
+    private final MappedDiskStore mStore;
+    private final String mKey;
+    private final Codec<T> mCodec;
+
+    /**
+     * Constructor
+     * @param context Context that this loader should be attached to.
+     * @param chain The loader to get the data from if it isn't stored yet. Its complete results are written to the store.
+     * @param store Where to keep the data.
+     * @param key Identifies the data within the store.
+     * @param codec Converts the data to and from bytes.
+     */
+    public DiskCacheLoader(Context context, Loader<Result<T>> chain, MappedDiskStore store, String key, Codec<T> codec) {
+        super(context, chain);
+
+        if (store == null)
+            throw new NullPointerException("store must not be null");
+        if (key == null)
+            throw new NullPointerException("key must not be null");
+        if (codec == null)
+            throw new NullPointerException("codec must not be null");
+
+        mStore = store;
+        mKey = key;
+        mCodec = codec;
+    }
+
+    /**
+     * The same cache as a tier of a {@link com.docusign.forklift.TierChain}, for chains built with its builder rather than by nesting
+     * loaders. Data that a later tier loads is written back to the store. Add it without a timeout: the store works through a
+     * FileChannel, which the timeout's interrupt would close.
+     * @param store Where to keep the data.
+     * @param key Identifies the data within the store.
+     * @param codec Converts the data to and from bytes.
+     */
+    public static <T> TierChain.Tier<T> tier(final MappedDiskStore store, final String key, final Codec<T> codec) {
+        if (store == null)
+            throw new NullPointerException("store must not be null");
+        if (key == null)
+            throw new NullPointerException("key must not be null");
+        if (codec == null)
+            throw new NullPointerException("codec must not be null");
+
+        return new TierChain.Tier<T>() {
+            @Override
+            public T load() throws ChainLoaderException {
+                return read(store, key, codec);
+            }
+
+            @Override
+            public void store(T data) {
+                if (data != null)
+                    write(store, key, codec, data);
+            }
+        };
+    }
+
+    private static <T> T read(MappedDiskStore store, String key, Codec<T> codec) throws ChainLoaderException {
+        ByteBuffer stored = store.get(key);
+        if (stored == null)
+            throw NO_RESULT;
+
+        try {
+            return codec.decode(stored);
+        } catch (IOException e) {
+            Log.w("DiskCacheLoader", "Discarding unreadable cached data for " + key, e);
+        } catch (RuntimeException e) {
+            Log.w("DiskCacheLoader", "Discarding unreadable cached data for " + key, e);
+        }
+
+        try {
+            store.remove(key);
+        } catch (IOException ignored) { }
+        throw NO_RESULT;
+    }
+
+    private static <T> void write(MappedDiskStore store, String key, Codec<T> codec, T data) {
+        try {
+            store.put(key, codec.encode(data));
+        } catch (IOException e) {
+            Log.w("DiskCacheLoader", "Could not cache data for " + key, e);
+        }
+    }
+
+    /** @inheritDoc */
+    @Override
+    public T doLoad() throws ChainLoaderException {
+        return read(mStore, mKey, mCodec);
+    }
+
+    /** @inheritDoc */
+    @Override
+    protected T onFallbackDelivered(T data, Type type) throws ChainLoaderException {
+        if (type != Type.PARTIAL && data != null)
+            write(mStore, mKey, mCodec, data);
+
+        return data;
+    }
+
+    /**
+     * @return The key the data is stored under.
+     */
+    protected String getKey() {
+        return mKey;
+    }
+}
@@ -2,11 +2,25 @@ package com.docusign.forklift;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.v4.content.AsyncTaskLoader;
 import android.support.v4.content.Loader;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Forklift<T> implements Loader.OnLoadCompleteListener<T> {
 
@@ -15,6 +29,7 @@ public class Forklift<T> implements Loader.OnLoadCompleteListener<T> {
      * The Loader will be reset and then run through its normal life cycle until it would have normally delivered a result via
      * {@link android.support.v4.content.Loader.OnLoadCompleteListener#onLoadComplete(android.support.v4.content.Loader, Object)}.
      * NOTA BENE: If the given Loader normally returns multiple results, this method will only return the first.
+     * Use {@link #stream(android.support.v4.content.Loader)} to get all of them.
      *
      * @param loader The {@link android.support.v4.content.Loader} to run synchronously
      * @param <T> The data type that the given {@link android.support.v4.content.Loader} will return
@@ -23,19 +38,346 @@ public class Forklift<T> implements Loader.OnLoadCompleteListener<T> {
      */
     @SuppressWarnings("unchecked")
 	public static <T> T getSync(Loader<T> loader) throws LoadCancelledException {
-		if (loader instanceof AsyncChainLoader<?>)
-			return (T)new AsyncChainLoader.ACLForklift<T>((AsyncChainLoader<T>)loader).getSync();
-		else
-			return new Forklift<T>(loader).getSync();
+		long start = ForkliftMetrics.start();
+		T result = null;
+		try {
+			if (loader instanceof AsyncChainLoader<?>)
+				result = (T)new AsyncChainLoader.ACLForklift<T>((AsyncChainLoader<T>)loader).getSync();
+			else
+				result = new Forklift<T>(loader).getSync();
+			return result;
+		} finally {
+			if (start != 0) {
+				Object key = loader instanceof AsyncChainLoader<?> ? ((AsyncChainLoader<?>)loader).getMetricsKey() : null;
+				ForkliftMetrics.end(ForkliftMetrics.Stage.GET_SYNC, loader, key, start, ForkliftMetrics.typeOf(result));
+			}
+		}
 	}
 
-    private static final long LOADER_WATCH_MILLIS = 20;
-	
+    /**
+     * Like {@link #getSync(android.support.v4.content.Loader)}, but gives up if no result has been returned within the given time.
+     * The load runs on a separate thread so that even a loader that is stuck inside its own background work can't hold up the caller
+     * past the deadline. On timeout the loader is reset, so it will not deliver a result later.
+     *
+     * @param loader The {@link android.support.v4.content.Loader} to run synchronously
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout argument
+     * @param <T> The data type that the given {@link android.support.v4.content.Loader} will return
+     * @return The first returned result
+     * @throws LoadCancelledException If the loader is cancelled or reset before a result is returned, or if the calling thread is interrupted.
+     * @throws TimeoutException If no result was returned before the timeout elapsed.
+     */
+    public static <T> T getSync(final Loader<T> loader, long timeout, TimeUnit unit) throws LoadCancelledException, TimeoutException {
+        FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return getSync(loader);
+            }
+        });
+        Drivers.POOL.execute(task);
+
+        try {
+            return task.get(timeout, unit);
+        } catch (TimeoutException e) {
+            cancel(loader, task);
+            throw e;
+        } catch (InterruptedException e) {
+            cancel(loader, task);
+            Thread.currentThread().interrupt();
+            throw new LoadCancelledException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof LoadCancelledException)
+                throw (LoadCancelledException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Processes many {@link com.docusign.forklift.AsyncChainLoader}s synchronously, running up to {@code parallelism} of them at once,
+     * and blocks until they have all returned. Each loader is processed exactly as {@link #getSync(android.support.v4.content.Loader)}
+     * would process it; the calling thread takes part in the work, so at most {@code parallelism - 1} additional threads are used.
+     * A loader that fails, throws or is cancelled does not stop the others; its slot in the returned list holds a
+     * {@link com.docusign.forklift.Result.Type#FAILURE} result instead.
+     * Must not be called on the main thread, since every loader needs the main thread to reset it.
+     *
+     * @param loaders The loaders to process. Each loader may only appear once.
+     * @param parallelism The maximum number of loaders to process at the same time. Must be at least 1.
+     * @param <T> The data type that the given loaders will return
+     * @return One result per loader, in the same order as the loaders were given
+     */
+    public static <T> List<Result<T>> getAllSync(Collection<? extends AsyncChainLoader<T>> loaders, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        if (Looper.myLooper() == Looper.getMainLooper())
+            throw new IllegalStateException("getAllSync must not be called on the main thread.");
+
+        final List<AsyncChainLoader<T>> work = new ArrayList<AsyncChainLoader<T>>(loaders);
+        @SuppressWarnings("unchecked")
+        final Result<T>[] results = new Result[work.size()];
+        final AtomicInteger next = new AtomicInteger(0);
+        final Throwable[] fatal = new Throwable[1];
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int i;
+                while ((i = next.getAndIncrement()) < results.length) {
+                    try {
+                        results[i] = new AsyncChainLoader.ACLForklift<T>(work.get(i)).getSync();
+                    } catch (LoadCancelledException e) {
+                        results[i] = Result.failure(e);
+                    } catch (RuntimeException e) {
+                        results[i] = Result.failure(new ChainLoaderException(e));
+                    } catch (Error e) {
+                        synchronized (fatal) {
+                            fatal[0] = e;
+                        }
+                        next.set(results.length); // nobody else needs to start anything new
+                    }
+                }
+            }
+        };
+
+        int helpers = Math.min(parallelism, results.length) - 1;
+        final CountDownLatch helpersDone = new CountDownLatch(Math.max(helpers, 0));
+        for (int h = 0; h < helpers; h++) {
+            final Runnable helper = worker;
+            Drivers.POOL.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        helper.run();
+                    } finally {
+                        helpersDone.countDown();
+                    }
+                }
+            });
+        }
+
+        worker.run();
+
+        boolean interrupted = false;
+        while (true) { // the helpers are still using our loaders, so we can't leave without them
+            try {
+                helpersDone.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        synchronized (fatal) {
+            if (fatal[0] != null)
+                throw (Error)fatal[0];
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Processes a {@link android.support.v4.content.Loader} without blocking the calling thread. The Loader is reset and run through its
+     * normal life cycle on the main thread, exactly as {@link #getSync(android.support.v4.content.Loader)} would, except that no thread
+     * waits for it; the first result completes the returned future, after which the Loader is reset again.
+     * Loaders that deliver {@link com.docusign.forklift.Result}s complete the future with their first result that isn't
+     * {@link com.docusign.forklift.Result.Type#PARTIAL}.
+     * Cancelling the returned future resets the Loader. If something else stops or resets the Loader first, the future fails with a
+     * {@link com.docusign.forklift.LoadCancelledException}.
+     *
+     * @param loader The {@link android.support.v4.content.Loader} to run
+     * @param <T> The data type that the given {@link android.support.v4.content.Loader} will return
+     * @return A future for the first returned result
+     */
+    public static <T> ForkliftFuture<T> getAsync(Loader<T> loader) {
+        return new AsyncLoad<T>(loader).start();
+    }
+
+    /**
+     * Processes a {@link android.support.v4.content.Loader} that returns {@link com.docusign.forklift.Result}s, yielding every result it
+     * returns (each with its {@link com.docusign.forklift.Result.Type}) in order, up to and including the first that isn't
+     * {@link com.docusign.forklift.Result.Type#PARTIAL}. Nothing is loaded until the first call to {@link ForkliftStream#next()}.
+     * An {@link com.docusign.forklift.AsyncChainLoader} is processed just as {@link #getSync(android.support.v4.content.Loader)} would
+     * process it, except that every result of its chain is passed through
+     * {@link AsyncChainLoader#onFallbackDelivered(Object, Result.Type)} and yielded, instead of only the first.
+     * See {@link com.docusign.forklift.ForkliftStream} for how results are held back when the consumer can't keep up.
+     *
+     * @param loader The {@link android.support.v4.content.Loader} to process
+     * @param <T> The data type that the given {@link android.support.v4.content.Loader} will return
+     * @return A stream of the loader's results. Must be read to the end or closed, or the loader is never reset.
+     */
+    public static <T> ForkliftStream<T> stream(Loader<Result<T>> loader) {
+        return stream(loader, ForkliftStream.DEFAULT_MAX_BUFFERED);
+    }
+
+    /**
+     * Like {@link #stream(android.support.v4.content.Loader)}, with a choice of how many results pushed by a loader (that isn't an
+     * {@link android.support.v4.content.AsyncTaskLoader}) may wait to be read before partial results start being replaced.
+     *
+     * @param maxBuffered The maximum number of results to hold on to. Must be at least 1.
+     */
+    public static <T> ForkliftStream<T> stream(Loader<Result<T>> loader, int maxBuffered) {
+        if (loader == null)
+            throw new NullPointerException("loader must not be null");
+        if (maxBuffered < 1)
+            throw new IllegalArgumentException("maxBuffered must be at least 1");
+
+        return new ForkliftStream<T>(ForkliftStream.sourceFor(loader, maxBuffered));
+    }
+
+    /**
+     * Drives a single {@link #getAsync(android.support.v4.content.Loader)}. Everything but construction happens on the main thread.
+     */
+    private static class AsyncLoad<T> implements Loader.OnLoadCompleteListener<T>, MessageQueue.IdleHandler {
+        private final Loader<T> mLoader;
+        private final ForkliftFuture<T> mFuture;
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+        private boolean mRunning;
+
+        public AsyncLoad(Loader<T> loader) {
+            mLoader = loader;
+            mFuture = new ForkliftFuture<T>(new Runnable() {
+                @Override
+                public void run() {
+                    onMainThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            finish();
+                        }
+                    });
+                }
+            });
+        }
+
+        public ForkliftFuture<T> start() {
+            onMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (mFuture.isDone())
+                        return; // cancelled before we ever got here
+
+                    try {
+                        mLoader.reset();
+                        mLoader.registerListener(0, AsyncLoad.this);
+                        mRunning = true;
+                        mLoader.startLoading();
+                    } catch (RuntimeException e) {
+                        finish();
+                        mFuture.fail(e);
+                        return;
+                    }
+
+                    if (mRunning) // a synchronous loader may have already delivered
+                        Looper.myQueue().addIdleHandler(AsyncLoad.this);
+                }
+            });
+            return mFuture;
+        }
+
+        /** @inheritDoc */
+        @Override
+        public void onLoadComplete(Loader<T> loader, T data) {
+            if (!mRunning)
+                return;
+
+            if (!loader.isStarted()) {
+                finish();
+                mFuture.fail(new LoadCancelledException());
+                return;
+            }
+
+            if (data instanceof Result<?> && ((Result<?>)data).getType() == Result.Type.PARTIAL)
+                return;
+
+            try {
+                mFuture.succeed(data); // before resetting, so callbacks on this thread see the data before it's released
+            } finally {
+                finish();
+            }
+        }
+
+        /** Same trick as {@link Forklift#mCancellationWatcher}: catches anybody else stopping or resetting the loader. */
+        @Override
+        public boolean queueIdle() {
+            if (!mRunning)
+                return false;
+
+            if (!mLoader.isStarted()) {
+                finish();
+                mFuture.fail(new LoadCancelledException());
+                return false;
+            }
+            return true;
+        }
+
+        private void finish() {
+            if (!mRunning)
+                return;
+
+            mRunning = false;
+            mLoader.unregisterListener(this);
+            mLoader.reset();
+        }
+
+        private void onMainThread(Runnable r) {
+            if (Looper.myLooper() == Looper.getMainLooper())
+                r.run();
+            else
+                mMainHandler.post(r);
+        }
+    }
+
+    private static <T> void cancel(Loader<T> loader, FutureTask<T> task) {
+        task.cancel(true); // wakes the driver if it's waiting on a listener-based loader
+        new Forklift<T>(loader).resetSynchronouslyOnUiThread(); // trips the cancellation checks of anything still running inline
+    }
+
+    /** Threads that run timed loads, so the caller is free to give up on them. */
+    private static class Drivers {
+        static final ExecutorService POOL = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger(1);
+
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "Forklift Driver #" + mCount.getAndIncrement());
+            }
+        });
+    }
+
 	private Loader<T> m_Loader;
 	private T m_Data;
+    private boolean mDelivered;
+    private boolean mCancelled;
+    private boolean mFinished;
 	private final Object m_Lock = new Object();
     private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
+    /**
+     * Loaders are only ever stopped or reset on the main thread, so checking after the main thread has finished whatever it was doing
+     * catches a cancellation as soon as it happens, without waking the waiting thread on a timer.
+     */
+    private final MessageQueue.IdleHandler mCancellationWatcher = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            synchronized (m_Lock) {
+                if (mFinished)
+                    return false; // all done, unregister
+
+                if (!m_Loader.isStarted()) {
+                    mCancelled = true;
+                    m_Lock.notifyAll();
+                    return false;
+                }
+                return true;
+            }
+        }
+    };
+
     /**
      * Constructor.
      * @param loader The {@link android.support.v4.content.Loader} to process synchronously
@@ -51,7 +393,12 @@ public class Forklift<T> implements Loader.OnLoadCompleteListener<T> {
 			throw new UnsupportedOperationException("Cannot manage any but my own loader.");
 		
 		synchronized (m_Lock) {
-			m_Data = data;
+            if (loader.isStarted()) {
+                m_Data = data;
+                mDelivered = true;
+            } else {
+                mCancelled = true; // a loader that was reset out from under us is still allowed to deliver, but we don't want it
+            }
 			m_Lock.notifyAll();
 		}
 	}
@@ -70,16 +417,31 @@ public class Forklift<T> implements Loader.OnLoadCompleteListener<T> {
             } else {
                 synchronized (m_Lock) {
                     m_Loader.registerListener(0, this);
-                    m_Loader.startLoading();
-                    while (m_Data == null) {
-                        try {
-                            if (!m_Loader.isStarted())
+                    try {
+                        m_Loader.startLoading();
+                        if (!mDelivered) {
+                            mMainHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Looper.myQueue().addIdleHandler(mCancellationWatcher);
+                                }
+                            });
+                        }
+                        while (!mDelivered) {
+                            if (mCancelled || !m_Loader.isStarted())
                                 throw new LoadCancelledException();
-                            m_Lock.wait(LOADER_WATCH_MILLIS);
-                        } catch (InterruptedException ignored) { }
+                            try {
+                                m_Lock.wait();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new LoadCancelledException(e);
+                            }
+                        }
+                        return m_Data;
+                    } finally {
+                        mFinished = true; // retires the watcher if it's still installed
+                        m_Loader.unregisterListener(this);
                     }
-                    m_Loader.unregisterListener(this);
-                    return m_Data;
                 }
             }
         } finally {
@@ -101,13 +463,20 @@ public class Forklift<T> implements Loader.OnLoadCompleteListener<T> {
                 }
             }, null);
             mMainHandler.post(task);
-            try {
-                task.get();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            } catch (ExecutionException e) {
-                e.printStackTrace();
+            boolean interrupted = false;
+            while (true) { // the reset has to happen even if we're being interrupted (e.g. a timed-out getSync) or the loader leaks
+                try {
+                    task.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                    break;
+                }
             }
+            if (interrupted)
+                Thread.currentThread().interrupt();
         }
     }
 }
@@ -0,0 +1,317 @@
+package com.docusign.forklift;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.v4.content.AsyncTaskLoader;
+import android.support.v4.content.Loader;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Every result of a {@link android.support.v4.content.Loader}, one at a time, as returned by
+ * {@link com.docusign.forklift.Forklift#stream(android.support.v4.content.Loader)}.
+ *
+ * Results are only produced on demand. An {@link com.docusign.forklift.AsyncChainLoader} (and every AsyncChainLoader in its chain) is
+ * run on the consuming thread, one step per call to {@link #next()}, so a slow consumer holds up the load rather than letting results
+ * pile up. Any other loader pushes its results whether anybody is ready for them or not; those are buffered, and once the buffer is
+ * full the newest {@link com.docusign.forklift.Result.Type#PARTIAL} result still waiting is replaced by the next one. A
+ * {@link com.docusign.forklift.Result.Type#COMPLETE} or {@link com.docusign.forklift.Result.Type#FAILURE} result is never dropped.
+ *
+ * A stream is meant to be consumed by a single thread, other than the main thread. {@link #close()} may be called from any thread.
+ *
+ * @param <T> The type of data being loaded
+ */
+public class ForkliftStream<T> {
+
+    /**
+     * Where a stream's results come from.
+     */
+    /* package */ interface Source<T> {
+        /**
+         * @return The next result, blocking until there is one, or null if there will be no more.
+         */
+        Result<T> next() throws LoadCancelledException;
+
+        /**
+         * Stops the source, making any {@link #next()} in progress on another thread throw a {@link LoadCancelledException}.
+         */
+        void cancel();
+
+        /**
+         * Gives back any loaders the source was using. Only called once no {@link #next()} is in progress.
+         */
+        void release();
+    }
+
+    /* package */ static final int DEFAULT_MAX_BUFFERED = 16;
+
+    /* package */ static <T> Source<T> sourceFor(Loader<Result<T>> loader, int maxBuffered) {
+        if (loader instanceof AsyncChainLoader<?>)
+            return new AsyncChainLoader.ACLStream<T>((AsyncChainLoader<T>)loader, maxBuffered);
+        if (loader instanceof AsyncTaskLoader<?>)
+            return new PullSource<T>((AsyncTaskLoader<Result<T>>)loader);
+        return new PushSource<T>(loader, maxBuffered);
+    }
+
+    private final Source<T> mSource;
+    private final Object mLock = new Object();
+    private boolean mBusy;
+    private boolean mDone;
+    private boolean mClosed;
+    private boolean mReleased;
+
+    /* package */ ForkliftStream(Source<T> source) {
+        mSource = source;
+    }
+
+    /**
+     * Waits for the next result.
+     * @return The next result, or null once the stream has ended. The stream ends after its first result that isn't
+     *         {@link com.docusign.forklift.Result.Type#PARTIAL}, or when it is closed.
+     * @throws LoadCancelledException If the loader is reset or stopped, the stream is closed, or the calling thread is interrupted while waiting.
+     */
+    public Result<T> next() throws LoadCancelledException {
+        if (Looper.myLooper() == Looper.getMainLooper())
+            throw new IllegalStateException("ForkliftStream must not be consumed on the main thread.");
+
+        synchronized (mLock) {
+            if (mDone)
+                return null;
+            if (mBusy)
+                throw new IllegalStateException("ForkliftStream must only be consumed by one thread at a time.");
+            mBusy = true;
+        }
+
+        Result<T> result;
+        boolean ended = true;
+        boolean closed;
+        try {
+            result = mSource.next();
+            ended = result == null || result.getType() != Result.Type.PARTIAL;
+        } finally {
+            boolean release;
+            synchronized (mLock) {
+                mBusy = false;
+                if (ended)
+                    mDone = true;
+                closed = mClosed;
+                release = mDone && !mReleased;
+                mReleased |= release;
+            }
+            if (release)
+                mSource.release();
+        }
+
+        if (closed) // whatever we got was too late
+            throw new LoadCancelledException();
+        return result;
+    }
+
+    /**
+     * Ends the stream and resets the loader. A {@link #next()} in progress on another thread throws a
+     * {@link com.docusign.forklift.LoadCancelledException}. Closing a stream that has already ended does nothing.
+     */
+    public void close() {
+        boolean release;
+        synchronized (mLock) {
+            if (mDone)
+                return;
+            mDone = true;
+            mClosed = true;
+            release = !mBusy; // otherwise next() releases once it notices
+            mReleased |= release;
+        }
+
+        if (release)
+            mSource.release();
+        else
+            mSource.cancel();
+    }
+
+    /* package */ static void resetSynchronouslyOnUiThread(Loader<?> loader) {
+        new Forklift<Object>(erase(loader)).resetSynchronouslyOnUiThread();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Loader<Object> erase(Loader<?> loader) {
+        return (Loader<Object>)loader;
+    }
+
+    /**
+     * An {@link android.support.v4.content.AsyncTaskLoader} returns exactly one result, and only when asked to.
+     */
+    private static class PullSource<T> implements Source<T> {
+        private final AsyncTaskLoader<Result<T>> mLoader;
+        private boolean mLoaded;
+
+        PullSource(AsyncTaskLoader<Result<T>> loader) {
+            mLoader = loader;
+        }
+
+        @Override
+        public Result<T> next() throws LoadCancelledException {
+            if (mLoaded)
+                return null;
+
+            mLoaded = true;
+            resetSynchronouslyOnUiThread(mLoader);
+            return mLoader.loadInBackground();
+        }
+
+        @Override
+        public void cancel() {
+            // loadInBackground() can't be interrupted; ForkliftStream drops whatever it returns
+        }
+
+        @Override
+        public void release() {
+            resetSynchronouslyOnUiThread(mLoader);
+        }
+    }
+
+    /**
+     * Any other loader is started and left to deliver its results, which are buffered until they are asked for.
+     */
+    private static class PushSource<T> implements Source<T>, Loader.OnLoadCompleteListener<Result<T>>, MessageQueue.IdleHandler {
+        private final Loader<Result<T>> mLoader;
+        private final int mMaxBuffered;
+        private final ArrayDeque<Result<T>> mBuffer = new ArrayDeque<Result<T>>();
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+        private boolean mStarted;
+        private boolean mEnded; // a final result has been buffered, so nothing more is wanted
+        private boolean mCancelled;
+        private boolean mRegistered;
+
+        PushSource(Loader<Result<T>> loader, int maxBuffered) {
+            mLoader = loader;
+            mMaxBuffered = maxBuffered;
+        }
+
+        @Override
+        public Result<T> next() throws LoadCancelledException {
+            if (!mStarted) {
+                mStarted = true;
+                onMainThreadAndWait(new Runnable() {
+                    @Override
+                    public void run() {
+                        mLoader.reset();
+                        mLoader.registerListener(0, PushSource.this);
+                        synchronized (PushSource.this) {
+                            mRegistered = true;
+                        }
+                        mLoader.startLoading();
+                        Looper.myQueue().addIdleHandler(PushSource.this);
+                    }
+                });
+            }
+
+            synchronized (this) {
+                while (mBuffer.isEmpty()) {
+                    if (mEnded)
+                        return null;
+                    if (mCancelled)
+                        throw new LoadCancelledException();
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new LoadCancelledException(e);
+                    }
+                }
+                return mBuffer.poll();
+            }
+        }
+
+        /** @inheritDoc */
+        @Override
+        public synchronized void onLoadComplete(Loader<Result<T>> loader, Result<T> data) {
+            if (mEnded || mCancelled || data == null)
+                return;
+
+            if (!loader.isStarted()) {
+                mCancelled = true;
+            } else if (data.getType() != Result.Type.PARTIAL) {
+                mBuffer.add(data);
+                mEnded = true;
+            } else if (mBuffer.size() >= mMaxBuffered) {
+                mBuffer.pollLast(); // only ever partial; a final result would have ended things
+                mBuffer.add(data);
+            } else {
+                mBuffer.add(data);
+            }
+            notifyAll();
+        }
+
+        /** Same trick as {@link Forklift}: loaders are only stopped or reset on the main thread, so check once it's idle. */
+        @Override
+        public boolean queueIdle() {
+            synchronized (this) {
+                if (mEnded || mCancelled)
+                    return false;
+                if (mLoader.isStarted())
+                    return true;
+
+                mCancelled = true;
+                notifyAll();
+                return false;
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                mCancelled = true;
+                notifyAll();
+            }
+            resetSynchronouslyOnUiThread(mLoader);
+        }
+
+        @Override
+        public void release() {
+            onMainThreadAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (PushSource.this) {
+                        mCancelled |= !mEnded; // retires the idle handler
+                        if (!mRegistered)
+                            return;
+                        mRegistered = false;
+                    }
+                    mLoader.unregisterListener(PushSource.this);
+                    mLoader.reset();
+                }
+            });
+        }
+
+        private void onMainThreadAndWait(Runnable r) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                r.run();
+                return;
+            }
+
+            FutureTask<Void> task = new FutureTask<Void>(r, null);
+            mMainHandler.post(task);
+            boolean interrupted = false;
+            while (true) { // loaders must be set up and torn down in full, or they leak
+                try {
+                    task.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    if (cause instanceof Error)
+                        throw (Error)cause;
+                    throw new RuntimeException(cause);
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+}
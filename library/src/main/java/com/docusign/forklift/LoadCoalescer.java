@@ -0,0 +1,217 @@
+package com.docusign.forklift;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Lets concurrent {@link com.docusign.forklift.AsyncChainLoader}s that return the same {@link AsyncChainLoader#getCoalescingKey()}
+ * share one load instead of each doing the same work.
+ *
+ * The two halves of a load are shared separately:
+ * <ul>
+ *     <li>{@link AsyncChainLoader#doLoad()} runs once per key at a time, on the thread of whichever loader got there first. Any other
+ *     loader with the same key waits for it and gets the very same {@link com.docusign.forklift.Result}, along with a reference of its
+ *     own to the result's {@link PooledPayload}, if it carries one, just as if it had loaded it.</li>
+ *     <li>The chained loader of whichever loader gets to the chain first (the owner) is the only one started; its results, PARTIAL or
+ *     not, are fanned out to every other loader that reaches the chain while it is running (the subscribers), each of which runs them
+ *     through its own {@link AsyncChainLoader#onFallbackDelivered(Object, Result.Type)}. If the owner is reset while others are still
+ *     subscribed, its chain keeps going on their behalf, and is only reset once the last of them has gone too.</li>
+ * </ul>
+ * Nothing is shared once it has finished: a loader that starts after a shared load has completed gets a load of its own.
+ */
+class LoadCoalescer {
+
+    private static final HashMap<Object, SelfLoad<?>> sSelfLoads = new HashMap<Object, SelfLoad<?>>();
+    private static final HashMap<Object, SharedChain<?>> sChains = new HashMap<Object, SharedChain<?>>(); // main thread only
+
+    /**
+     * Runs the given self-load, unless one is already running for the same key, in which case waits for that one instead.
+     * @return Whichever result the self-load that actually ran returned
+     */
+    static <T> Result<T> loadSelf(Object key, Callable<Result<T>> load) {
+        SelfLoad<T> selfLoad;
+        boolean mine = false;
+        synchronized (sSelfLoads) {
+            @SuppressWarnings("unchecked")
+            SelfLoad<T> running = (SelfLoad<T>)sSelfLoads.get(key);
+            selfLoad = running;
+            if (selfLoad == null) {
+                selfLoad = new SelfLoad<T>(key, load);
+                sSelfLoads.put(key, selfLoad);
+                mine = true;
+            } else {
+                selfLoad.mWaiters++;
+            }
+        }
+
+        FutureTask<Result<T>> task = selfLoad.mTask;
+        if (mine)
+            task.run();
+
+        boolean interrupted = false;
+        try {
+            while (true) { // a self-load can't be cancelled, so neither can waiting for one
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    if (cause instanceof Error)
+                        throw (Error)cause;
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One self-load that's running, and how many other loaders are waiting for it.
+     */
+    private static final class SelfLoad<T> implements Callable<Result<T>> {
+        private final Object mKey;
+        private final Callable<Result<T>> mLoad;
+        final FutureTask<Result<T>> mTask = new FutureTask<Result<T>>(this);
+        int mWaiters; // guarded by sSelfLoads
+
+        private SelfLoad(Object key, Callable<Result<T>> load) {
+            mKey = key;
+            mLoad = load;
+        }
+
+        @Override
+        public Result<T> call() throws Exception {
+            Result<T> result = null;
+            try {
+                result = mLoad.call();
+                return result;
+            } finally {
+                int waiters;
+                synchronized (sSelfLoads) {
+                    sSelfLoads.remove(mKey); // nobody else can join from here on
+                    waiters = mWaiters;
+                }
+                // each waiter releases the payload as its own once it's done with it, so each needs a reference, taken before any of
+                // them can see the result
+                PooledPayload payload = PooledPayload.of(result);
+                if (payload != null) {
+                    for (int i = 0; i < waiters; i++)
+                        payload.retain();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a loader that has reached its chain to the chain shared under the given key, creating it if need be.
+     * Must be called on the main thread.
+     * @return true if the loader is the new owner of the shared chain, and must start its chained loader itself
+     */
+    static <T> boolean joinChain(Object key, AsyncChainLoader<T> loader) {
+        @SuppressWarnings("unchecked")
+        SharedChain<T> chain = (SharedChain<T>)sChains.get(key);
+        if (chain == null) {
+            chain = new SharedChain<T>(key, loader);
+            sChains.put(key, chain);
+            loader.setSharedChain(chain);
+            return true;
+        }
+
+        loader.setSharedChain(chain);
+        if (chain.mOwner == loader) {
+            chain.mOwnerAttached = true; // back from a reset, and the chain never stopped
+        } else if (!chain.mSubscribers.contains(loader)) {
+            chain.mSubscribers.add(loader);
+        }
+
+        if (chain.mLatest != null) // catch up on what we missed
+            loader.onSharedChainResult(chain.mLatest);
+        return false;
+    }
+
+    /**
+     * A chain being shared by several loaders. Everything here happens on the main thread.
+     */
+    static class SharedChain<T> {
+        private final Object mKey;
+        private final AsyncChainLoader<T> mOwner;
+        private final ArrayList<AsyncChainLoader<T>> mSubscribers = new ArrayList<AsyncChainLoader<T>>();
+        private boolean mOwnerAttached = true;
+        private boolean mEnded;
+        private Result<T> mLatest;
+
+        private SharedChain(Object key, AsyncChainLoader<T> owner) {
+            mKey = key;
+            mOwner = owner;
+        }
+
+        boolean isOwner(AsyncChainLoader<T> loader) {
+            return loader == mOwner;
+        }
+
+        /**
+         * Called by the owner with every result its chained loader delivers, whether or not the owner itself is still interested.
+         */
+        void publish(Result<T> data) {
+            mLatest = data;
+            ArrayList<AsyncChainLoader<T>> subscribers = new ArrayList<AsyncChainLoader<T>>(mSubscribers);
+
+            boolean finished = data == null || data.getType() != Result.Type.PARTIAL;
+            if (finished)
+                end();
+
+            for (AsyncChainLoader<T> subscriber : subscribers)
+                subscriber.onSharedChainResult(data);
+
+            if (finished && !mOwnerAttached)
+                mOwner.resetChainLoader(); // nobody reset it when the owner left, because it was still in use
+        }
+
+        /**
+         * Called by any member of the shared chain as it is reset.
+         * @return true if the caller may reset its own chained loader, false if it is still being used by others.
+         */
+        boolean leave(AsyncChainLoader<T> loader) {
+            if (mEnded)
+                return true;
+
+            if (loader == mOwner) {
+                if (mSubscribers.isEmpty()) {
+                    end();
+                    return true;
+                }
+                mOwnerAttached = false;
+                return false;
+            }
+
+            mSubscribers.remove(loader);
+            loader.setSharedChain(null);
+            if (mSubscribers.isEmpty() && !mOwnerAttached) {
+                end();
+                mOwner.resetChainLoader();
+            }
+            return true;
+        }
+
+        private void end() {
+            if (mEnded)
+                return;
+
+            mEnded = true;
+            if (sChains.get(mKey) == this)
+                sChains.remove(mKey);
+
+            mOwner.setSharedChain(null);
+            for (AsyncChainLoader<T> subscriber : mSubscribers)
+                subscriber.setSharedChain(null);
+        }
+    }
+}
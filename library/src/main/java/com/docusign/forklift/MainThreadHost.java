@@ -0,0 +1,26 @@
+package com.docusign.forklift;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * The {@link Host} for {@link AsyncChainLoader}'s fallback deliveries: delivers them on the main thread, like any other Loader result.
+ */
+public class MainThreadHost implements Host {
+
+    private static final MainThreadHost sInstance = new MainThreadHost();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    public static MainThreadHost get() {
+        return sInstance;
+    }
+
+    private MainThreadHost() { }
+
+    /** @inheritDoc */
+    @Override
+    public void post(Runnable runnable) {
+        mHandler.post(runnable);
+    }
+}
@@ -0,0 +1,282 @@
+package com.docusign.forklift;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A size-bounded, least-recently-used cache of complete {@link com.docusign.forklift.Result}s, shared by every
+ * {@link com.docusign.forklift.AsyncChainLoader} that opts in by returning a key from {@link AsyncChainLoader#getCacheKey()}.
+ *
+ * Cached results are shared between loaders, so the cache keeps track of which loaders hold each one: a result is only passed to
+ * {@link AsyncChainLoader#onReleaseData(Result)} once it has been evicted (or replaced) <em>and</em> no loader is holding on to it anymore.
+ */
+public class ResultCache {
+
+    /**
+     * Decides how much of a cache's capacity each entry uses.
+     */
+    public interface Weigher {
+        /**
+         * @return The weight of the given entry. Must not be negative, and must not change while the entry is cached.
+         */
+        int weigh(Object key, Result<?> result);
+    }
+
+    /** Weighs every entry as 1, making the cache's capacity a maximum number of entries. */
+    public static final Weigher ENTRY_COUNT = new Weigher() {
+        @Override
+        public int weigh(Object key, Result<?> result) {
+            return 1;
+        }
+    };
+
+    private static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private static ResultCache sDefault;
+
+    /**
+     * @return The cache used by loaders that don't override {@link AsyncChainLoader#getResultCache()}. Holds up to 64 results, unless replaced.
+     */
+    public static synchronized ResultCache getDefault() {
+        if (sDefault == null)
+            sDefault = new ResultCache(DEFAULT_MAX_ENTRIES);
+        return sDefault;
+    }
+
+    /**
+     * Replaces the default cache. Results already held by the old cache stay there until it is emptied with {@link #evictAll()}.
+     */
+    public static synchronized void setDefault(ResultCache cache) {
+        if (cache == null)
+            throw new NullPointerException("cache must not be null");
+        sDefault = cache;
+    }
+
+    private static class Entry {
+        final Object mKey;
+        final Result<?> mResult;
+        final int mWeight;
+        final ArrayList<AsyncChainLoader<?>> mHolders = new ArrayList<AsyncChainLoader<?>>(1);
+        AsyncChainLoader<?> mReleaser;
+        boolean mCached = true;
+
+        Entry(Object key, Result<?> result, int weight, AsyncChainLoader<?> releaser) {
+            mKey = key;
+            mResult = result;
+            mWeight = weight;
+            mReleaser = releaser;
+        }
+    }
+
+    private final long mMaxWeight;
+    private final Weigher mWeigher;
+    private final LinkedHashMap<Object, Entry> mEntries = new LinkedHashMap<Object, Entry>(16, .75f, true); // access order, eldest first
+    private final IdentityHashMap<Result<?>, Entry> mHeld = new IdentityHashMap<Result<?>, Entry>(); // cached, or still held by a loader
+    private long mWeight;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    /**
+     * Constructor
+     * @param maxEntries The maximum number of results to keep.
+     */
+    public ResultCache(int maxEntries) {
+        this(maxEntries, ENTRY_COUNT);
+    }
+
+    /**
+     * Constructor
+     * @param maxWeight The maximum total weight of the results to keep.
+     * @param weigher Weighs each result as it is added.
+     */
+    public ResultCache(long maxWeight, Weigher weigher) {
+        if (maxWeight < 0)
+            throw new IllegalArgumentException("maxWeight must not be negative");
+        if (weigher == null)
+            throw new NullPointerException("weigher must not be null");
+
+        mMaxWeight = maxWeight;
+        mWeigher = weigher;
+    }
+
+    /**
+     * Looks up a result on behalf of a loader, which from now on holds it until it passes it back to {@link #release(AsyncChainLoader, Result)}.
+     * @return The cached result, or null if there is none.
+     */
+    /* package */ <T> Result<T> acquire(Object key, AsyncChainLoader<T> loader) {
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            if (entry == null) {
+                mMissCount++;
+                return null;
+            }
+
+            mHitCount++;
+            hold(entry, loader);
+            entry.mReleaser = loader;
+            @SuppressWarnings("unchecked")
+            Result<T> result = (Result<T>)entry.mResult;
+            return result;
+        }
+    }
+
+    /**
+     * Looks up a result without holding on to it.
+     * @return The cached result, or null if there is none.
+     */
+    /* package */ <T> Result<T> peek(Object key) {
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            if (entry == null) {
+                mMissCount++;
+                return null;
+            }
+
+            mHitCount++;
+            @SuppressWarnings("unchecked")
+            Result<T> result = (Result<T>)entry.mResult;
+            return result;
+        }
+    }
+
+    /**
+     * Caches a result, replacing whatever was cached under the same key.
+     * @param holder A loader that is holding the result already, and will pass it to {@link #release(AsyncChainLoader, Result)} when it's done with it.
+     *               Null if only the cache is holding it, in which case releaser is used to release it.
+     * @param releaser The loader whose {@link AsyncChainLoader#onReleaseData(Result)} should be used if nobody else is around to release the result.
+     */
+    /* package */ <T> void put(Object key, Result<T> result, AsyncChainLoader<T> holder, AsyncChainLoader<T> releaser) {
+        ArrayList<Entry> released = new ArrayList<Entry>();
+        synchronized (this) {
+            Entry held = mHeld.get(result);
+            if (held != null) {
+                // already known - either cached already, or evicted but still held (in which case it stays out of the cache)
+                if (holder != null)
+                    hold(held, holder);
+                return;
+            }
+
+            Entry existing = mEntries.remove(key);
+            if (existing != null)
+                uncache(existing, released);
+
+            Entry entry = new Entry(key, result, mWeigher.weigh(key, result), releaser);
+            if (holder != null)
+                hold(entry, holder);
+            mEntries.put(key, entry);
+            mHeld.put(result, entry);
+            mWeight += entry.mWeight;
+
+            Iterator<Entry> eldest = mEntries.values().iterator();
+            while (mWeight > mMaxWeight && eldest.hasNext()) {
+                Entry victim = eldest.next();
+                eldest.remove();
+                mEvictionCount++;
+                uncache(victim, released);
+            }
+        }
+
+        releaseAll(released);
+    }
+
+    /**
+     * Passes back a result a loader was holding.
+     * @return false if this cache knows nothing about the result, in which case the loader is responsible for releasing it itself.
+     */
+    /* package */ <T> boolean release(AsyncChainLoader<T> loader, Result<T> result) {
+        Entry entry;
+        synchronized (this) {
+            entry = mHeld.get(result);
+            if (entry == null)
+                return false;
+
+            entry.mHolders.remove(loader);
+            entry.mReleaser = loader;
+
+            if (entry.mCached || !entry.mHolders.isEmpty())
+                return true;
+
+            mHeld.remove(result);
+        }
+
+        onRelease(entry);
+        return true;
+    }
+
+    /**
+     * Drops every cached result. Results that are still held by a loader are released once that loader is done with them.
+     */
+    public void evictAll() {
+        ArrayList<Entry> released = new ArrayList<Entry>();
+        synchronized (this) {
+            for (Iterator<Entry> i = mEntries.values().iterator(); i.hasNext(); ) {
+                Entry entry = i.next();
+                i.remove();
+                mEvictionCount++;
+                uncache(entry, released);
+            }
+        }
+
+        releaseAll(released);
+    }
+
+    // must be called with this held, after removing entry from mEntries
+    private void uncache(Entry entry, ArrayList<Entry> released) {
+        entry.mCached = false;
+        mWeight -= entry.mWeight;
+        if (entry.mHolders.isEmpty()) {
+            mHeld.remove(entry.mResult);
+            released.add(entry);
+        }
+    }
+
+    // must be called with this held. a loader only ever holds one result at a time, so the holder lists stay tiny.
+    private static void hold(Entry entry, AsyncChainLoader<?> loader) {
+        if (!entry.mHolders.contains(loader))
+            entry.mHolders.add(loader);
+    }
+
+    private void releaseAll(ArrayList<Entry> released) {
+        for (Entry entry : released)
+            onRelease(entry);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void onRelease(Entry entry) {
+        ((AsyncChainLoader)entry.mReleaser).onReleaseData(entry.mResult);
+    }
+
+    /** @return The number of lookups that found a result. */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /** @return The number of lookups that didn't find a result. */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /** @return The number of results dropped to make room for others, or by {@link #evictAll()}. */
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /** @return The number of results currently cached. */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /** @return The total weight of the results currently cached. */
+    public synchronized long weight() {
+        return mWeight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ResultCache[size=" + mEntries.size() + ", weight=" + mWeight + "/" + mMaxWeight + ", hits=" + mHitCount + ", misses=" + mMissCount
+                + ", evictions=" + mEvictionCount + "]";
+    }
+}
@@ -0,0 +1,53 @@
+package com.docusign.forklift;
+
+import android.content.Context;
+
+import java.util.concurrent.Executor;
+
+/**
+ * An {@link com.docusign.forklift.AsyncChainLoader} that loads its data through a {@link com.docusign.forklift.TierChain}: every tier,
+ * from memory to the network, runs within this one loader's {@link #doLoad()}, in place of a chain of loaders nested one per tier.
+ *
+ * @param <T> The type of data being loaded
+ */
+public class TieredLoader<T> extends AsyncChainLoader<T> {
+
+    private final TierChain<T> mTiers;
+
+    /**
+     * Constructor
+     * @param context Context that this loader should be attached to.
+     * @param tiers Where to load the data from.
+     */
+    public TieredLoader(Context context, TierChain<T> tiers) {
+        this(context, tiers, null);
+    }
+
+    /**
+     * Constructor
+     * @param context Context that this loader should be attached to.
+     * @param tiers Where to load the data from.
+     * @param loadExecutor Where the tiers run when this loader is started, or null for AsyncTaskLoader's own pool.
+     */
+    public TieredLoader(Context context, TierChain<T> tiers, Executor loadExecutor) {
+        super(context, null, loadExecutor, null);
+
+        if (tiers == null)
+            throw new NullPointerException("tiers must not be null");
+
+        mTiers = tiers;
+    }
+
+    /** @inheritDoc */
+    @Override
+    public T doLoad() throws ChainLoaderException {
+        return mTiers.load();
+    }
+
+    /**
+     * @return The tiers this loader loads through.
+     */
+    public TierChain<T> getTiers() {
+        return mTiers;
+    }
+}